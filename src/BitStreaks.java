@@ -0,0 +1,112 @@
+/**
+ * Bit-parallel streak queries over bitboards, for a square board of up to 64
+ * cells and any win streak.
+ * The whole board is packed in a single long, bit (row * size + col) marking
+ * a cell (the layout of Board and BoardSnapshot).
+ * Every query checks all the lines of the board at once with a handful of
+ * shifts and ands per direction, instead of walking the board cell by cell.
+ *
+ * @author Matanel Pataki
+ */
+public class BitStreaks {
+
+    /* ************ PRIVATE MEMBERS *********** */
+    // right, down, down-right and down-left:
+    private static final int DIRECTIONS = 4;
+    private final int size;
+    private final int streak;
+    private final long cells; // all the cells of the board
+    private final int[] shifts = new int[DIRECTIONS]; // cell steps
+    private final long[] starts = new long[DIRECTIONS]; // line starts
+
+    /**
+     * CONSTRUCTOR -
+     * Initializes the queries of the given board configuration.
+     *
+     * @param size   - Number of rows (and cols) of the board, at most 8.
+     * @param streak - Number of marks in a row needed to win.
+     */
+    public BitStreaks(int size, int streak) {
+        if (size < 1 || size > Long.SIZE || size * size > Long.SIZE ||
+                streak < 1 || streak > size) {
+            throw new IllegalArgumentException("Bad board configuration: " +
+                    size + "x" + size + ", streak " + streak);
+        }
+        this.size = size;
+        this.streak = streak;
+        this.cells = -1L >>> (Long.SIZE - size * size);
+        initLines();
+    }
+
+    /* ************ PUBLIC METHODS *********** */
+
+    /**
+     * @param bits - The cells of a mark (bits past the last cell of the
+     *             board are ignored).
+     * @return True if the cells contain a streak, False otherwise.
+     */
+    public boolean hasStreak(long bits) {
+        for (int d = 0; d < DIRECTIONS; d++) {
+            long lines = bits & starts[d];
+            for (int i = 1; i < streak && lines != 0; i++) {
+                lines &= bits >>> (i * shifts[d]);
+            }
+            if (lines != 0) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Finds all the empty cells that complete a streak of the given cells.
+     * The empty cells are masked with the cells of the board not in own, so
+     * e.g. the complement of the marks placed may be passed as is.
+     *
+     * @param own   - The cells of a mark (bits past the last cell of the
+     *              board are ignored).
+     * @param empty - The empty cells.
+     * @return The empty cells of the board in which placing the mark makes
+     * a streak.
+     */
+    public long completingCells(long own, long empty) {
+        empty &= cells & ~own;
+        long result = 0;
+        for (int d = 0; d < DIRECTIONS; d++) {
+            int shift = shifts[d];
+            for (int missing = 0; missing < streak; missing++) {
+                long lines = starts[d] & (empty >>> (missing * shift));
+                for (int i = 0; i < streak && lines != 0; i++) {
+                    if (i != missing) {
+                        lines &= own >>> (i * shift);
+                    }
+                }
+                result |= lines << (missing * shift);
+            }
+        }
+        return result;
+    }
+
+    /* ************ PRIVATE METHODS *********** */
+
+    /*
+        Computes, for every direction, the step between neighbouring cells
+        and the cells a whole streak may start at.
+     */
+    private void initLines() {
+        int[] rowSteps = {0, 1, 1, 1};
+        int[] colSteps = {1, 0, 1, -1};
+        for (int d = 0; d < DIRECTIONS; d++) {
+            shifts[d] = rowSteps[d] * size + colSteps[d];
+            for (int row = 0; row < size; row++) {
+                for (int col = 0; col < size; col++) {
+                    int lastRow = row + rowSteps[d] * (streak - 1);
+                    int lastCol = col + colSteps[d] * (streak - 1);
+                    if (lastRow < size && lastCol >= 0 && lastCol < size) {
+                        starts[d] |= 1L << (row * size + col);
+                    }
+                }
+            }
+        }
+    }
+}
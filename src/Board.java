@@ -3,6 +3,11 @@
  * The board updates according to the putMark function.
  * Also, the board provides valid info of the game status
  * to the players, regarding mark placements ect.
+ * Win streaks are detected with bit-parallel queries over the whole board
+ * (see BitStreaks), unless running with -Dboard.scalarStreaks=true, in which
+ * case the board is traversed cell by cell from the last placed mark.
+ * Every cell is a bit of a long, so the board has at most 64 cells - SIZE
+ * may be at most 8. A larger SIZE fails as the class is loaded, telling so.
  *
  *  @author Matanel Pataki
  */
@@ -11,28 +16,86 @@ public class Board {
     /* ************ PUBLIC MEMBERS *********** */
     public static final int SIZE = 6;
     public static final int WIN_STREAK = 4;
+    public static final int NO_CELL = -1;
+    public static final long ALL_CELLS = -1L >>> (Long.SIZE - SIZE * SIZE);
 
     /* ************ PRIVATE MEMBERS *********** */
-    private final Mark[][] board = new Mark[SIZE][SIZE];
+    // The board is kept as two bitboards, bit (row * SIZE + col) of each
+    // marking the cells taken by X and by O:
+    private long xBits;
+    private long oBits;
     private int marksPlaced; // Number of marks currently on board
+    private int lastPlacedCell = NO_CELL; // cell index of the last mark
     private Mark winner; // The winner of the game, according to the board
 
+    private static final BitStreaks STREAKS; // null to check cell by cell
+    private static final String SIZE_ERR = "Board.SIZE is %d, giving %d" +
+            " cells, but a bitboard holds at most %d: SIZE may be at most 8";
+
+    static {
+        if (SIZE * SIZE > Long.SIZE) {
+            throw new IllegalStateException(String.format(SIZE_ERR, SIZE,
+                    SIZE * SIZE, Long.SIZE));
+        }
+        STREAKS = Boolean.getBoolean("board.scalarStreaks") ? null :
+                new BitStreaks(SIZE, WIN_STREAK);
+    }
+
     /**
      * CONSTRUCTOR -
      * Initializes the board to be filled with all blanks marks.
      */
     public Board() {
+        this.xBits = 0;
+        this.oBits = 0;
         this.marksPlaced = 0;
+        this.lastPlacedCell = NO_CELL;
         this.winner = null;
-        for (int row = 0; row < SIZE; row++) {
-            for (int col = 0; col < SIZE; col++) {
-                board[row][col] = Mark.BLANK;
-            }
-        }
+    }
+
+    /**
+     * CONSTRUCTOR -
+     * Initializes the board to be a copy of the given board.
+     *
+     * @param other - The board to copy.
+     */
+    public Board(Board other) {
+        this.xBits = other.xBits;
+        this.oBits = other.oBits;
+        this.marksPlaced = other.marksPlaced;
+        this.lastPlacedCell = other.lastPlacedCell;
+        this.winner = other.winner;
+    }
+
+    /**
+     * Restores a board from the given snapshot, in constant time.
+     *
+     * @param snapshot - The snapshot to restore.
+     * @return A new board, in the position captured by the snapshot.
+     */
+    public static Board fromSnapshot(BoardSnapshot snapshot) {
+        Board board = new Board();
+        board.xBits = snapshot.getXBits();
+        board.oBits = snapshot.getOBits();
+        board.marksPlaced = snapshot.getMarksPlaced();
+        board.winner = snapshot.getWinner();
+        return board;
     }
 
     /* ************ PUBLIC METHODS *********** */
 
+    /**
+     * Clears the board back to all blank marks, so it may be reused for a
+     * new game without allocating a new board.
+     */
+    public void reset() {
+        this.xBits = 0;
+        this.oBits = 0;
+        this.marksPlaced = 0;
+        this.lastPlacedCell = NO_CELL;
+        this.winner = null;
+    }
+
     /**
      * Accessing the board at the given coordinates to
      * return the marked placed in them.
@@ -43,7 +106,7 @@ public class Board {
      */
     public Mark getMark(int row, int col) {
         if (validCoordinates(row, col))
-            return board[row][col];
+            return markAt(row * SIZE + col);
         return Mark.BLANK;
     }
 
@@ -58,8 +121,13 @@ public class Board {
      */
     public boolean putMark(Mark mark, int row, int col) {
         if (validInputToPutNewMark(mark, row, col)) {
-            this.board[row][col] = mark;
+            if (mark == Mark.X) {
+                this.xBits |= 1L << (row * SIZE + col);
+            } else {
+                this.oBits |= 1L << (row * SIZE + col);
+            }
             this.marksPlaced += 1;
+            this.lastPlacedCell = row * SIZE + col;
             checkForAWinStreak(mark, row, col);
             return true;
         }
@@ -73,6 +141,21 @@ public class Board {
         return this.winner;
     }
 
+    /**
+     * @return Number of marks currently on the board.
+     */
+    public int getMarksPlaced() {
+        return this.marksPlaced;
+    }
+
+    /**
+     * @return The cell index (row * SIZE + col) of the last mark placed,
+     * NO_CELL if the board is empty (or was restored from a snapshot).
+     */
+    public int getLastPlacedCell() {
+        return this.lastPlacedCell;
+    }
+
     /**
      * @return An indication whether the game is still on going or not.
      */
@@ -80,6 +163,41 @@ public class Board {
         return this.winner != null;
     }
 
+    /**
+     * Finds all the blank cells in which placing the given mark would win
+     * the game at once.
+     *
+     * @param mark - The mark to be placed.
+     * @return The winning cells, as a bitboard (bit row * SIZE + col).
+     */
+    public long getWinningCells(Mark mark) {
+        long own = mark == Mark.X ? xBits : oBits;
+        long empty = ~(xBits | oBits) & ALL_CELLS;
+        if (STREAKS != null) {
+            return STREAKS.completingCells(own, empty);
+        }
+        long cells = 0;
+        for (int cell = 0; cell < SIZE * SIZE; cell++) {
+            if ((empty & (1L << cell)) != 0 &&
+                    longestStreakThrough(cell / SIZE, cell % SIZE,
+                            own | (1L << cell)) >= WIN_STREAK) {
+                cells |= 1L << cell;
+            }
+        }
+        return cells;
+    }
+
+    /**
+     * Captures the current position in an immutable snapshot, which may be
+     * freely shared between threads (e.g. for a parallel search, or for an
+     * observer) without locking and without copying the board.
+     *
+     * @return A snapshot of the board.
+     */
+    public BoardSnapshot snapshot() {
+        return new BoardSnapshot(xBits, oBits, marksPlaced, winner);
+    }
+
     /* ************ PRIVATE METHODS *********** */
 
     /*
@@ -99,18 +217,10 @@ public class Board {
         The function is being called after each mark placement.
      */
     private void checkForAWinStreak(Mark mark, int row, int col) {
-        // horizontal and vertical streaks:
-        int vertical = countMarks(row, col, 0, -1, mark) +
-                countMarks(row, col, 0, 1, mark) - 1;
-        int horizontal = countMarks(row, col, -1, 0, mark) +
-                countMarks(row, col, 1, 0, mark) - 1;
-        // diagonals streaks:
-        int diagonal1 = countMarks(row, col, -1, 1, mark) +
-                countMarks(row, col, 1, -1, mark) - 1;
-        int diagonal2 = countMarks(row, col, 1, 1, mark) +
-                countMarks(row, col, -1, -1, mark) - 1;
-        if (horizontal >= WIN_STREAK || vertical >= WIN_STREAK ||
-                diagonal1 >= WIN_STREAK || diagonal2 >= WIN_STREAK) {
+        long bits = mark == Mark.X ? xBits : oBits;
+        boolean won = STREAKS != null ? STREAKS.hasStreak(bits) :
+                longestStreakThrough(row, col, bits) >= WIN_STREAK;
+        if (won) {
             if (mark == Mark.X) {
                 this.winner = Mark.X;
             } else {
@@ -123,16 +233,35 @@ public class Board {
         }
     }
 
+    /*
+        Returns the length of the longest streak of the given cells passing
+        through the given coordinates, horizontally, vertically or diagonally.
+     */
+    private static int longestStreakThrough(int row, int col, long bits) {
+        // horizontal and vertical streaks:
+        int vertical = countMarks(row, col, 0, -1, bits) +
+                countMarks(row, col, 0, 1, bits) - 1;
+        int horizontal = countMarks(row, col, -1, 0, bits) +
+                countMarks(row, col, 1, 0, bits) - 1;
+        // diagonals streaks:
+        int diagonal1 = countMarks(row, col, -1, 1, bits) +
+                countMarks(row, col, 1, -1, bits) - 1;
+        int diagonal2 = countMarks(row, col, 1, 1, bits) +
+                countMarks(row, col, -1, -1, bits) - 1;
+        return Math.max(Math.max(vertical, horizontal),
+                Math.max(diagonal1, diagonal2));
+    }
+
     /*
         Counts how many marks are on the streak in a given direction.
         The direction is being represented by rowDelta and colDelta.
      */
-    private int countMarks(int row, int col,
-                           int rowDelta, int colDelta, Mark mark) {
+    private static int countMarks(int row, int col,
+                                  int rowDelta, int colDelta, long bits) {
         int count = 0;
         while (row < SIZE && row >= 0 &&
                 col < SIZE && col >= 0 &&
-                board[row][col] == mark) {
+                (bits & (1L << (row * SIZE + col))) != 0) {
             count++;
             row += rowDelta;
             col += colDelta;
@@ -140,6 +269,19 @@ public class Board {
         return count;
     }
 
+    /*
+        Returns the mark placed in the given cell index.
+     */
+    private Mark markAt(int cell) {
+        if ((xBits & (1L << cell)) != 0) {
+            return Mark.X;
+        }
+        if ((oBits & (1L << cell)) != 0) {
+            return Mark.O;
+        }
+        return Mark.BLANK;
+    }
+
     /*
         Checks whether the given coordinates are in the board dimensions.
      */
@@ -0,0 +1,112 @@
+/**
+ * Represents an immutable snapshot of a board's position.
+ * The position is kept as two bitboards (bit (row * Board.SIZE + col) of
+ * each marks the cells taken by X and by O) plus the game status, so a
+ * snapshot is cheap to take, cheap to restore (see Board.fromSnapshot) and
+ * may be shared freely between threads. A snapshot is checked to be
+ * consistent as it is created (see the constructor).
+ *
+ * @author Matanel Pataki
+ */
+public final class BoardSnapshot {
+
+    /* ************ PRIVATE MEMBERS *********** */
+    private static final String BITS_ERR = "Bad snapshot: X %x, O %x," +
+            " %d marks placed (X and O must take distinct cells of the" +
+            " board, as many as the marks placed)";
+    private final long xBits;
+    private final long oBits;
+    private final int marksPlaced;
+    private final Mark winner; // null if the game is still on going
+
+    /**
+     * CONSTRUCTOR -
+     * Initializes the snapshot.
+     *
+     * @param xBits       - The cells taken by X.
+     * @param oBits       - The cells taken by O.
+     * @param marksPlaced - Number of marks on the board.
+     * @param winner      - The winner of the game (null if none).
+     * @throws IllegalArgumentException If X and O take a common cell, or a
+     *                                  cell out of the board (see
+     *                                  Board.ALL_CELLS), or the marks placed
+     *                                  are not the cells they take.
+     */
+    public BoardSnapshot(long xBits, long oBits, int marksPlaced,
+                         Mark winner) {
+        if ((xBits & oBits) != 0 || ((xBits | oBits) & ~Board.ALL_CELLS) != 0
+                || Long.bitCount(xBits | oBits) != marksPlaced) {
+            throw new IllegalArgumentException(String.format(BITS_ERR, xBits,
+                    oBits, marksPlaced));
+        }
+        this.xBits = xBits;
+        this.oBits = oBits;
+        this.marksPlaced = marksPlaced;
+        this.winner = winner;
+    }
+
+    /* ************ PUBLIC METHODS *********** */
+
+    /**
+     * @return The cells taken by X, as a bitboard.
+     */
+    public long getXBits() {
+        return this.xBits;
+    }
+
+    /**
+     * @return The cells taken by O, as a bitboard.
+     */
+    public long getOBits() {
+        return this.oBits;
+    }
+
+    /**
+     * @return Number of marks on the board.
+     */
+    public int getMarksPlaced() {
+        return this.marksPlaced;
+    }
+
+    /**
+     * @return A mark, representing the winner of the game (null if none).
+     */
+    public Mark getWinner() {
+        return this.winner;
+    }
+
+    /**
+     * @param row - The row to access.
+     * @param col - The col to access.
+     * @return The mark set at the given location (BLANK if out of the board).
+     */
+    public Mark getMark(int row, int col) {
+        if (row < 0 || row >= Board.SIZE || col < 0 || col >= Board.SIZE) {
+            return Mark.BLANK;
+        }
+        long cell = 1L << (row * Board.SIZE + col);
+        if ((xBits & cell) != 0) {
+            return Mark.X;
+        }
+        if ((oBits & cell) != 0) {
+            return Mark.O;
+        }
+        return Mark.BLANK;
+    }
+
+    @Override
+    public boolean equals(Object other) {
+        if (!(other instanceof BoardSnapshot)) {
+            return false;
+        }
+        BoardSnapshot snapshot = (BoardSnapshot) other;
+        return xBits == snapshot.xBits && oBits == snapshot.oBits
+                && marksPlaced == snapshot.marksPlaced
+                && winner == snapshot.winner;
+    }
+
+    @Override
+    public int hashCode() {
+        return Long.hashCode(xBits * 31 + oBits);
+    }
+}
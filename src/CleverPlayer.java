@@ -14,6 +14,25 @@ public class CleverPlayer implements Player {
     private final int[] lastPlacedLocation = // keeps the last mark location
             new int[]{random.nextInt(Board.SIZE), random.nextInt(Board.SIZE)};
     private Direction currentDirection = Direction.U; // current direction
+    private final int[] newMarkLocation = new int[2]; // next mark location
+
+    /**
+     * CONSTRUCTOR -
+     * Initializes a player with a random seed.
+     */
+    public CleverPlayer() {
+    }
+
+    /**
+     * CONSTRUCTOR -
+     * Initializes a player whose choices are reproducible from the seed.
+     *
+     * @param seed - The seed of the player's random choices.
+     */
+    public CleverPlayer(long seed) {
+        random.setSeed(seed);
+        newGame();
+    }
 
     /* ************ PUBLIC METHODS *********** */
 
@@ -26,8 +45,8 @@ public class CleverPlayer implements Player {
      */
     @Override
     public void playTurn(Board board, Mark mark) {
-        int[] newMarkLocation =
-                new int[]{lastPlacedLocation[0], lastPlacedLocation[1]};
+        newMarkLocation[0] = lastPlacedLocation[0];
+        newMarkLocation[1] = lastPlacedLocation[1];
         keepOnCurrentDirection(newMarkLocation);
         while (!board.putMark(mark, newMarkLocation[0], newMarkLocation[1])) {
             findNewDirection(board);
@@ -37,6 +56,16 @@ public class CleverPlayer implements Player {
         lastPlacedLocation[1] = newMarkLocation[1];
     }
 
+    /**
+     * Starts a new game from a random location, in the initial direction.
+     */
+    @Override
+    public void newGame() {
+        lastPlacedLocation[0] = random.nextInt(Board.SIZE);
+        lastPlacedLocation[1] = random.nextInt(Board.SIZE);
+        currentDirection = Direction.U;
+    }
+
     /* ************ PRIVATE METHODS *********** */
 
     /*
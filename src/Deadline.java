@@ -0,0 +1,88 @@
+/**
+ * Represents the deadline of a single move.
+ * The game sets the deadline of the current move before invoking the
+ * playTurn function of a player, so a searching player is able to poll it
+ * cheaply (by calling Deadline.current().expired()) and return in time.
+ *
+ * @author Matanel Pataki
+ */
+public final class Deadline {
+
+    /* ************ PUBLIC MEMBERS *********** */
+    public static final Deadline NONE = new Deadline(Long.MAX_VALUE);
+
+    /* ************ PRIVATE MEMBERS *********** */
+    private static final ThreadLocal<Deadline> CURRENT =
+            ThreadLocal.withInitial(() -> NONE);
+    // System.nanoTime() value of the deadline, false if it never expires:
+    private volatile long endNanos;
+    private volatile boolean bounded;
+    private volatile boolean cancelled; // set when the move was taken away
+
+    /**
+     * CONSTRUCTOR -
+     * Initializes a deadline that expires in the given amount of time.
+     *
+     * @param nanosFromNow - Time until expiry, Long.MAX_VALUE for unbounded.
+     */
+    public Deadline(long nanosFromNow) {
+        this.bounded = nanosFromNow != Long.MAX_VALUE;
+        this.endNanos = System.nanoTime() + (bounded ? nanosFromNow : 0);
+        this.cancelled = false;
+    }
+
+    /* ************ PUBLIC METHODS *********** */
+
+    /**
+     * @return The deadline of the move currently played on this thread,
+     * Deadline.NONE if the game is not timed.
+     */
+    public static Deadline current() {
+        return CURRENT.get();
+    }
+
+    /**
+     * @return True if the time is up (or the move was cancelled),
+     * False otherwise.
+     */
+    public boolean expired() {
+        return cancelled || (bounded && System.nanoTime() - endNanos >= 0);
+    }
+
+    /**
+     * @return The time left until the deadline in nanoseconds (0 if expired),
+     * Long.MAX_VALUE for an unbounded deadline.
+     */
+    public long remainingNanos() {
+        if (cancelled) return 0;
+        if (!bounded) return Long.MAX_VALUE;
+        return Math.max(0, endNanos - System.nanoTime());
+    }
+
+    /**
+     * Expires the deadline immediately.
+     */
+    public void cancel() {
+        this.cancelled = true;
+    }
+
+    /* ************ PACKAGE METHODS *********** */
+
+    /*
+        Moves the deadline to the given time from now (Long.MAX_VALUE for
+        unbounded), e.g. when a search turns out to be searching a move it
+        was not given the time of.
+     */
+    void extend(long nanosFromNow) {
+        boolean limited = nanosFromNow != Long.MAX_VALUE;
+        this.endNanos = System.nanoTime() + (limited ? nanosFromNow : 0);
+        this.bounded = limited;
+    }
+
+    /*
+        Sets the deadline of the move played on the current thread.
+     */
+    static void setCurrent(Deadline deadline) {
+        CURRENT.set(deadline);
+    }
+}
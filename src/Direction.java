@@ -0,0 +1,5 @@
+/**
+ * @author Matanel Pataki
+ */
+
+enum Direction {U, R, D, L, UR, UL, DR, DL} // Represents direction of a player
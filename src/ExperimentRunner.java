@@ -0,0 +1,348 @@
+import java.io.BufferedReader;
+import java.io.FileReader;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * Runs a batch of tournaments (an experiment) in a single JVM.
+ * The experiment is read from a spec file, holding a line per matchup and
+ * optional settings, e.g.:
+ *      threads 4       # size of the worker pool (default: all cores)
+ *      warmup 2000     # warm-up rounds per matchup, not timed or reported
+ *      # [rounds] [player1] [player2] [optional - move ms, game ms]
+ *      500 clever snartypamts
+ *      1000 whatever whatever 5 50
+ * All the matchups share one worker pool - the rounds of every matchup are
+ * split into chunks played in parallel, each by its own players.
+ * A matchup plays at least a round, and is either untimed (no times, or
+ * both 0) or has both a move time and a game time.
+ * The warm-up phase plays every matchup first, so the JIT compiled code is
+ * what gets measured. The results are printed and written to a single
+ * report, as CSV or as JSON according to the report file's extension.
+ *
+ * @author Matanel Pataki
+ */
+public class ExperimentRunner {
+
+    /* ************ PRIVATE MEMBERS *********** */
+    private static final String USAGE_ERR = "Usage: java ExperimentRunner" +
+            " [spec file] [report file: .csv/.json]";
+    private static final String SPEC_ERR = "Bad experiment spec, line %d: %s";
+    private static final String RESULT_MSG = "=== %s vs %s (%d rounds): " +
+            "player 1: %d | player 2: %d | Draws: %d | %.1f games/s ===";
+    private static final String CSV_HEADER = "player1,player2,board,streak," +
+            "move_ms,game_ms,rounds,player1_wins,player2_wins,draws," +
+            "elapsed_ms,games_per_s";
+    private static final String CSV_ROW =
+            "%s,%s,%d,%d,%d,%d,%d,%d,%d,%d,%.3f,%.1f";
+    private static final String JSON_HEADER = "{\"threads\": %d," +
+            " \"warmup_rounds\": %d, \"board\": %d, \"streak\": %d," +
+            " \"results\": [";
+    private static final String JSON_ROW = "  {\"player1\": \"%s\"," +
+            " \"player2\": \"%s\", \"move_ms\": %d, \"game_ms\": %d," +
+            " \"rounds\": %d, \"player1_wins\": %d, \"player2_wins\": %d," +
+            " \"draws\": %d, \"elapsed_ms\": %.3f, \"games_per_s\": %.1f}";
+    private static final String JSON_FOOTER = "]}";
+    private static final String JSON_EXTENSION = ".json";
+    private static final String THREADS_KEY = "threads";
+    private static final String WARMUP_KEY = "warmup";
+    private static final String COMMENT = "#";
+    private static final int CHUNKS_PER_THREAD = 4;
+    private static final double NANOS_IN_MILLI = 1e6;
+    private static final double NANOS_IN_SECOND = 1e9;
+    private final List<Matchup> matchups;
+    private final int threads;
+    private final int warmupRounds;
+
+    /**
+     * CONSTRUCTOR -
+     * Initializes the experiment.
+     *
+     * @param matchups     - The matchups to play.
+     * @param threads      - Size of the worker pool.
+     * @param warmupRounds - Rounds of each matchup to play before measuring.
+     */
+    public ExperimentRunner(List<Matchup> matchups, int threads,
+                            int warmupRounds) {
+        this.matchups = matchups;
+        this.threads = threads;
+        this.warmupRounds = warmupRounds;
+    }
+
+    /* ************ PUBLIC METHODS *********** */
+
+    /**
+     * Parses an experiment spec, printing the first error found (if any).
+     *
+     * @param in - The reader of the spec.
+     * @return The experiment, null if the spec is malformed.
+     * @throws IOException If the spec could not be read.
+     */
+    public static ExperimentRunner parse(BufferedReader in)
+            throws IOException {
+        List<Matchup> matchups = new ArrayList<>();
+        int threads = Runtime.getRuntime().availableProcessors();
+        int warmupRounds = 0;
+        PlayerFactory playerFactory = new PlayerFactory();
+        String line;
+        for (int number = 1; (line = in.readLine()) != null; number++) {
+            String[] fields = stripComment(line).trim().split("\\s+");
+            try {
+                if (fields[0].isEmpty()) {
+                    continue;
+                }
+                boolean valid;
+                if (fields[0].equals(THREADS_KEY) && fields.length == 2) {
+                    threads = Integer.parseInt(fields[1]);
+                    valid = threads >= 1;
+                } else if (fields[0].equals(WARMUP_KEY) && fields.length == 2) {
+                    warmupRounds = Integer.parseInt(fields[1]);
+                    valid = warmupRounds >= 0;
+                } else if ((fields.length == 3 || fields.length == 5) &&
+                        isAutomated(playerFactory, fields[1]) &&
+                        isAutomated(playerFactory, fields[2])) {
+                    Matchup matchup = new Matchup(Integer.parseInt(fields[0]),
+                            fields[1], fields[2],
+                            fields.length == 5 ? Long.parseLong(fields[3]) : 0,
+                            fields.length == 5 ? Long.parseLong(fields[4]) : 0);
+                    valid = isValid(matchup);
+                    matchups.add(matchup);
+                } else {
+                    valid = false;
+                }
+                if (!valid) {
+                    System.err.println(String.format(SPEC_ERR, number, line));
+                    return null;
+                }
+            } catch (NumberFormatException e) {
+                System.err.println(String.format(SPEC_ERR, number, line));
+                return null;
+            }
+        }
+        return new ExperimentRunner(matchups, threads, warmupRounds);
+    }
+
+    /**
+     * Runs the warm-up phase, then all the matchups, printing the result of
+     * each matchup once it is done.
+     *
+     * @return The results of the matchups, in the order of the spec.
+     * @throws InterruptedException If interrupted while waiting for a round.
+     * @throws ExecutionException   If a round has failed.
+     */
+    public List<Result> run() throws InterruptedException, ExecutionException {
+        ExecutorService pool = Executors.newFixedThreadPool(threads);
+        List<Result> results = new ArrayList<>();
+        try {
+            for (Matchup matchup : matchups) {
+                playInParallel(pool, matchup, warmupRounds);
+            }
+            for (Matchup matchup : matchups) {
+                long start = System.nanoTime();
+                int[] winnings = playInParallel(pool, matchup, matchup.rounds);
+                Result result = new Result(matchup, winnings,
+                        System.nanoTime() - start);
+                results.add(result);
+                System.out.println(String.format(Locale.ROOT, RESULT_MSG,
+                        matchup.player1, matchup.player2, matchup.rounds,
+                        winnings[0], winnings[1], winnings[2],
+                        result.gamesPerSecond()));
+            }
+        } finally {
+            pool.shutdownNow();
+        }
+        return results;
+    }
+
+    /**
+     * Writes the report of the experiment, as JSON if the file name ends
+     * with .json, or as CSV otherwise.
+     *
+     * @param results - The results of the experiment.
+     * @param path    - The file to write the report to.
+     * @throws IOException If the report could not be written.
+     */
+    public void writeReport(List<Result> results, String path)
+            throws IOException {
+        boolean json = path.endsWith(JSON_EXTENSION);
+        try (PrintWriter out = new PrintWriter(path)) {
+            if (json) {
+                out.println(String.format(Locale.ROOT, JSON_HEADER, threads,
+                        warmupRounds, Board.SIZE, Board.WIN_STREAK));
+            } else {
+                out.println(CSV_HEADER);
+            }
+            for (int i = 0; i < results.size(); i++) {
+                Result result = results.get(i);
+                Matchup matchup = result.matchup;
+                if (json) {
+                    out.print(String.format(Locale.ROOT, JSON_ROW,
+                            matchup.player1, matchup.player2,
+                            matchup.moveMillis, matchup.gameMillis,
+                            matchup.rounds,
+                            result.winnings[0], result.winnings[1],
+                            result.winnings[2], result.elapsedMillis(),
+                            result.gamesPerSecond()));
+                    out.println(i < results.size() - 1 ? "," : "");
+                } else {
+                    out.println(String.format(Locale.ROOT, CSV_ROW,
+                            matchup.player1, matchup.player2, Board.SIZE,
+                            Board.WIN_STREAK, matchup.moveMillis,
+                            matchup.gameMillis, matchup.rounds,
+                            result.winnings[0], result.winnings[1],
+                            result.winnings[2],
+                            result.elapsedMillis(), result.gamesPerSecond()));
+                }
+            }
+            if (json) {
+                out.println(JSON_FOOTER);
+            }
+        }
+    }
+
+    /* ************ PRIVATE METHODS *********** */
+
+    /*
+        Plays the given number of rounds of a matchup, split into chunks
+        played by the worker pool, and sums up their scores.
+     */
+    private int[] playInParallel(ExecutorService pool, Matchup matchup,
+                                 int rounds)
+            throws InterruptedException, ExecutionException {
+        int chunk = Math.max(1, (rounds + threads * CHUNKS_PER_THREAD - 1) /
+                (threads * CHUNKS_PER_THREAD));
+        List<Future<int[]>> chunks = new ArrayList<>();
+        for (int first = 0; first < rounds; first += chunk) {
+            int from = first;
+            int to = Math.min(rounds, first + chunk);
+            chunks.add(pool.submit(() -> playChunk(matchup, from, to)));
+        }
+        int[] winnings = new int[3];
+        for (Future<int[]> pending : chunks) {
+            int[] chunkWinnings = pending.get();
+            for (int i = 0; i < winnings.length; i++) {
+                winnings[i] += chunkWinnings[i];
+            }
+        }
+        return winnings;
+    }
+
+    /*
+        Plays a range of rounds of a matchup, with players of its own.
+     */
+    private static int[] playChunk(Matchup matchup, int from, int to) {
+        PlayerFactory playerFactory = new PlayerFactory();
+        Player[] players = {playerFactory.buildPlayer(matchup.player1),
+                playerFactory.buildPlayer(matchup.player2)};
+        TimeControl timeControl = matchup.moveMillis > 0 ?
+                new TimeControl(matchup.moveMillis, matchup.gameMillis, false)
+                : null;
+        return new Tournament(to - from, new VoidRenderer(), players,
+                timeControl).playRounds(from, to);
+    }
+
+    /*
+        Returns the line without its comment.
+     */
+    private static String stripComment(String line) {
+        int comment = line.indexOf(COMMENT);
+        return comment < 0 ? line : line.substring(0, comment);
+    }
+
+    /*
+        Checks whether a matchup plays at least a round, and is untimed or
+        has both clocks.
+     */
+    private static boolean isValid(Matchup matchup) {
+        boolean untimed = matchup.moveMillis == 0 && matchup.gameMillis == 0;
+        return matchup.rounds > 0 && (untimed ||
+                (matchup.moveMillis > 0 && matchup.gameMillis > 0));
+    }
+
+    /*
+        Checks whether the given player type exists and needs no user.
+     */
+    private static boolean isAutomated(PlayerFactory playerFactory,
+                                       String type) {
+        return !type.equals(PlayerFactory.HUMAN) &&
+                playerFactory.buildPlayer(type) != null;
+    }
+
+    /**
+     * A single matchup of the experiment.
+     */
+    public static final class Matchup {
+        private final int rounds;
+        private final String player1;
+        private final String player2;
+        private final long moveMillis; // 0 for untimed games
+        private final long gameMillis;
+
+        /**
+         * CONSTRUCTOR -
+         * Initializes the matchup.
+         *
+         * @param rounds     - Number of rounds to play.
+         * @param player1    - Type of the first player.
+         * @param player2    - Type of the second player.
+         * @param moveMillis - Time budget of a move, 0 for untimed games.
+         * @param gameMillis - Time budget of a player for a whole game.
+         */
+        public Matchup(int rounds, String player1, String player2,
+                       long moveMillis, long gameMillis) {
+            this.rounds = rounds;
+            this.player1 = player1;
+            this.player2 = player2;
+            this.moveMillis = moveMillis;
+            this.gameMillis = gameMillis;
+        }
+    }
+
+    /**
+     * The result of a single matchup.
+     */
+    public static final class Result {
+        private final Matchup matchup;
+        private final int[] winnings;
+        private final long elapsedNanos;
+
+        private Result(Matchup matchup, int[] winnings, long elapsedNanos) {
+            this.matchup = matchup;
+            this.winnings = winnings;
+            this.elapsedNanos = elapsedNanos;
+        }
+
+        private double elapsedMillis() {
+            return elapsedNanos / NANOS_IN_MILLI;
+        }
+
+        private double gamesPerSecond() {
+            return elapsedNanos == 0 ? 0 :
+                    matchup.rounds / (elapsedNanos / NANOS_IN_SECOND);
+        }
+    }
+
+    /* ************ MAIN *********** */
+
+    public static void main(String[] args) throws Exception {
+        if (args.length != 2) {
+            System.err.println(USAGE_ERR);
+            return;
+        }
+        ExperimentRunner experiment;
+        try (BufferedReader in = new BufferedReader(new FileReader(args[0]))) {
+            experiment = parse(in);
+        }
+        if (experiment == null) {
+            return;
+        }
+        experiment.writeReport(experiment.run(), args[1]);
+    }
+}
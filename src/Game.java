@@ -1,9 +1,31 @@
+import java.util.Arrays;
+import java.util.IdentityHashMap;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicBoolean;
+
 /**
  * Represents a game.
  * Creating a new board for the player to play on.
  * After receiving 2 player and a renderer to render the board,
  * The class is able to run a full game until it received confirmation that
  * there is a winner to game.
+ * A game may be reset and played again (see reset()), and every player is
+ * notified (by newGame()) before the first turn of each game.
+ * When given a time control, every move is played against a per-move and a
+ * per-game clock. A player who overruns its clock has a fallback move played
+ * on its behalf, or forfeits the game, according to the time control.
+ * A player never plays two turns at once: the turn of a player whose
+ * previous turn overran waits (on its clock) until that turn has returned.
+ * Every game, and every move, is reported to the flight recorder (see
+ * GameEvents) and to the player profiler (see PlayerProfiler), when on.
  *
  * @author Matanel Pataki
  */
@@ -14,6 +36,25 @@ public class Game {
     private final Mark[] marks;
     private final Renderer renderer;
     private final Board board = new Board();
+    private final TimeControl timeControl; // null for an untimed game
+    private final long[] usedNanos; // clock time used by each player
+    private ExecutorService turnExecutor; // runs the turns of a timed game
+    // players whose last turn overran, and is still running on an abandoned
+    // turn thread (kept across reset, as the players are):
+    private final Map<Player, CountDownLatch> overrunning =
+            new IdentityHashMap<>();
+    private int turn; // number of turns played so far
+    private Mark forfeitWinner; // winner of a game lost on time, if any
+    // the listeners of the game, and those of them notified of every turn:
+    private GameListener[] listeners = new GameListener[0];
+    private GameListener[] followers = new GameListener[0];
+    // the cell placed in on every turn (see GameListener.gameEnded):
+    private int[] cells = new int[Board.SIZE * Board.SIZE];
+    private long startNanos; // System.nanoTime() of the first turn
+    private static final PlayerProfiler PROFILER = PlayerProfiler.getDefault();
+    private static final long IDLE_THREAD_SECONDS = 1;
+    private static final int NO_MOVE = -1;
+    private static final int ILLEGAL_MOVE = -2;
     /* messages to print games status, if needed:
     private static final String STARS_SEP = "*************************";
     private static final String GAME_ENDED_MSG = STARS_SEP + "\nGame Over!\t";
@@ -30,9 +71,25 @@ public class Game {
      * @param renderer - Represents the renderer of the board.
      */
     public Game(Player player1, Player player2, Renderer renderer) {
+        this(player1, player2, renderer, null);
+    }
+
+    /**
+     * CONSTRUCTOR -
+     * Initializes a timed game.
+     *
+     * @param player1     - Represents the first player.
+     * @param player2     - Represents the second player.
+     * @param renderer    - Represents the renderer of the board.
+     * @param timeControl - The clocks of the game, null for an untimed game.
+     */
+    public Game(Player player1, Player player2, Renderer renderer,
+                TimeControl timeControl) {
         this.Players = new Player[]{player1, player2};
         this.marks = new Mark[]{Mark.X, Mark.O};
         this.renderer = renderer;
+        this.timeControl = timeControl;
+        this.usedNanos = new long[Players.length];
     }
 
     /* ************ PUBLIC METHODS *********** */
@@ -46,14 +103,389 @@ public class Game {
      */
     public Mark run() {
         renderer.renderBoard(board);
-        Player currentPlayer;
-        for (int i = 0; !board.gameEnded(); i++) {
-            currentPlayer = Players[i % Players.length];
-            currentPlayer.playTurn(board, marks[i % marks.length]);
-            renderer.renderBoard(board);
-        }
-//        return declareWinner(board.getWinner()); // to get winner massage
-        return board.getWinner(); // comment out if declareWinner() is called
+        while (playNextTurn()) {
+            // keep on playing until there is a winner
+        }
+//        return declareWinner(getWinner()); // to get winner massage
+        return getWinner(); // comment out if declareWinner() is called
+    }
+
+    /**
+     * Plays a single turn, by invoking the playTurn function of the player
+     * whose turn it is. Allows the game to be driven one move at a time
+     * (e.g. by the game server) instead of by run().
+     *
+     * @return True if the game is still on going after the turn,
+     * False otherwise.
+     */
+    public boolean playNextTurn() {
+        if (gameEnded()) {
+            return false;
+        }
+        if (turn == 0) {
+            Players[0].newGame();
+            Players[1].newGame();
+            for (GameListener listener : listeners) {
+                listener.gameStarted(Players[0], Players[1]);
+            }
+            startNanos = System.nanoTime();
+            GameEvents.GameStarted event = new GameEvents.GameStarted();
+            if (event.shouldCommit()) {
+                event.player1 = PlayerProfiler.typeOf(Players[0]);
+                event.player2 = PlayerProfiler.typeOf(Players[1]);
+                event.commit();
+            }
+        }
+        int current = turn % Players.length;
+        int marksBefore = board.getMarksPlaced();
+        if (timeControl == null) {
+            playTurn(Players[current], board, marks[current]);
+        } else if (!playTimedTurn(current)) {
+            // lost on time:
+            forfeitWinner = marks[(current + 1) % marks.length];
+        }
+        notifyMovePlayed(current, marksBefore);
+        turn++;
+        renderer.renderBoard(board);
+        if (gameEnded()) {
+            GameEvents.GameEnded event = new GameEvents.GameEnded();
+            if (event.shouldCommit()) {
+                event.winner = getWinner().name();
+                event.turns = turn;
+                event.gameNanos = System.nanoTime() - startNanos;
+                event.commit();
+            }
+            return false;
+        }
+        return true;
+    }
+
+    /**
+     * Resets the game to its start, with the given players, so the game and
+     * its board may be reused instead of allocating new ones for every game.
+     * The time control and the listeners of the game are kept.
+     *
+     * @param player1 - Represents the first player.
+     * @param player2 - Represents the second player.
+     */
+    public void reset(Player player1, Player player2) {
+        Players[0] = player1;
+        Players[1] = player2;
+        board.reset();
+        turn = 0;
+        forfeitWinner = null;
+        Arrays.fill(usedNanos, 0);
+    }
+
+    /**
+     * Adds a listener to be notified of the course of the game (through the
+     * listener it returns for the game, see GameListener.forGame).
+     *
+     * @param listener - The listener to add.
+     */
+    public void addListener(GameListener listener) {
+        GameListener forGame = listener.forGame();
+        listeners = Arrays.copyOf(listeners, listeners.length + 1);
+        listeners[listeners.length - 1] = forGame;
+        if (forGame.followsMoves()) {
+            followers = Arrays.copyOf(followers, followers.length + 1);
+            followers[followers.length - 1] = forGame;
+        }
+    }
+
+    /**
+     * @return An indication whether the game has ended or not.
+     */
+    public boolean gameEnded() {
+        return forfeitWinner != null || board.gameEnded();
+    }
+
+    /**
+     * @return A mark, representing the winner of the game (null if on going).
+     */
+    public Mark getWinner() {
+        return forfeitWinner != null ? forfeitWinner : board.getWinner();
+    }
+
+    /**
+     * @return The mark of the player whose turn it is.
+     */
+    public Mark getCurrentMark() {
+        return marks[turn % marks.length];
+    }
+
+    /**
+     * @return The board the game is being played on.
+     */
+    public Board getBoard() {
+        return board;
+    }
+
+    /**
+     * @param player - The index of the player (0 for the first player).
+     * @return The clock time the player has used so far, in nanoseconds.
+     */
+    public long getUsedNanos(int player) {
+        return usedNanos[player];
+    }
+
+    /* ************ PRIVATE METHODS *********** */
+
+    /*
+        Invokes the playTurn function of the player, on the thread running
+        the turn, reporting the move to the flight recorder and the profiler
+        if they are on.
+     */
+    private void playTurn(Player player, Board on, Mark mark) {
+        GameEvents.MovePlayed event = new GameEvents.MovePlayed();
+        event.begin();
+        long start = 0;
+        long cpu = 0;
+        long allocated = 0;
+        PlayerProfiler.Account account = null;
+        if (PROFILER != null) {
+            account = PROFILER.accountOf(player);
+            PlayerProfiler.setCurrent(account); // for the searches it submits
+            start = System.nanoTime();
+            cpu = PROFILER.threadCpuNanos();
+            allocated = PROFILER.threadAllocatedBytes();
+        }
+        int marksBefore = on.getMarksPlaced();
+        try {
+            player.playTurn(on, mark);
+        } finally {
+            if (PROFILER != null) {
+                PlayerProfiler.setCurrent(null);
+            }
+        }
+        if (PROFILER != null) {
+            PROFILER.record(account, System.nanoTime() - start,
+                    PROFILER.threadCpuNanos() - cpu,
+                    PROFILER.threadAllocatedBytes() - allocated);
+        }
+        event.end();
+        if (event.shouldCommit()) {
+            event.player = PlayerProfiler.typeOf(player);
+            event.mark = mark.name();
+            event.ply = turn;
+            event.cell = on.getMarksPlaced() == marksBefore ?
+                    Board.NO_CELL : on.getLastPlacedCell();
+            event.commit();
+        }
+    }
+
+    /*
+        Records the turn just played, notifying the listeners following the
+        moves of it, and all the listeners of the end of the game if it has
+        ended.
+     */
+    private void notifyMovePlayed(int current, int marksBefore) {
+        if (listeners.length == 0) {
+            return;
+        }
+        int cell = board.getMarksPlaced() == marksBefore ?
+                Board.NO_CELL : board.getLastPlacedCell();
+        if (turn == cells.length) {
+            cells = Arrays.copyOf(cells, cells.length * 2);
+        }
+        cells[turn] = cell;
+        for (GameListener follower : followers) {
+            follower.movePlayed(turn, Players[current], marks[current],
+                    cell);
+        }
+        if (gameEnded()) {
+            Mark winner = getWinner();
+            for (GameListener listener : listeners) {
+                listener.gameEnded(winner, cells, turn + 1);
+            }
+        }
+    }
+
+    /*
+        Plays a single turn against the clock.
+        The player plays on a copy of the board on the turn thread, so a
+        player that is still running after its move was taken away cannot
+        touch the game. The move found on the copy is then placed on the
+        game board.
+        Returns false if the player lost the game on time, true otherwise.
+     */
+    private boolean playTimedTurn(int player) {
+        Mark mark = marks[player];
+        Player current = Players[player];
+        long budget = Math.min(timeControl.getMoveNanos(),
+                remainingGameNanos(player));
+        if (budget == 0) {
+            return onTimeout(mark);
+        }
+        long start = System.nanoTime();
+        if (!awaitOverrun(current, budget)) {
+            usedNanos[player] += System.nanoTime() - start;
+            return onTimeout(mark);
+        }
+        if (budget != TimeControl.UNLIMITED) {
+            budget -= System.nanoTime() - start;
+        }
+        Board copy = new Board(board);
+        Deadline deadline = new Deadline(budget);
+        AtomicBoolean started = new AtomicBoolean();
+        CountDownLatch returned = new CountDownLatch(1);
+        Future<?> pending = turnExecutor().submit(() -> {
+            if (!started.compareAndSet(false, true)) {
+                return; // taken away before it started
+            }
+            Deadline.setCurrent(deadline);
+            try {
+                playTurn(current, copy, mark);
+            } finally {
+                Deadline.setCurrent(Deadline.NONE);
+                returned.countDown();
+            }
+        });
+        boolean inTime = awaitTurn(pending, deadline, budget);
+        usedNanos[player] += System.nanoTime() - start;
+        if (!inTime) {
+            if (!started.compareAndSet(false, true)) {
+                overrunning.put(current, returned);
+            }
+            return onTimeout(mark);
+        }
+        int cell = findPlayedCell(copy, mark);
+        if (cell == ILLEGAL_MOVE) {
+            return onTimeout(mark);
+        }
+        if (cell != NO_MOVE) { // placing nothing passes, as in untimed games
+            board.putMark(mark, cell / Board.SIZE, cell % Board.SIZE);
+        }
+        return true;
+    }
+
+    /*
+        Waits, up to the budget, for the overrunning turn of the player (if
+        any) to return. Returns true if the player may play, false if its
+        previous turn is still running.
+     */
+    private boolean awaitOverrun(Player player, long budget) {
+        CountDownLatch returned = overrunning.get(player);
+        if (returned == null) {
+            return true;
+        }
+        try {
+            if (budget == TimeControl.UNLIMITED) {
+                returned.await();
+            } else if (!returned.await(budget, TimeUnit.NANOSECONDS)) {
+                return false;
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return false;
+        }
+        overrunning.remove(player);
+        return true;
+    }
+
+    /*
+        Waits for the turn to end, up to the budget plus the grace period.
+        Returns true if the player finished in time, false otherwise. A turn
+        taken away from the player leaves its thread to it, and the next
+        turns run on a fresh one.
+     */
+    private boolean awaitTurn(Future<?> turn, Deadline deadline, long budget) {
+        long wait = budget == TimeControl.UNLIMITED ? budget :
+                budget + timeControl.getGraceNanos();
+        try {
+            turn.get(wait, TimeUnit.NANOSECONDS);
+            return true;
+        } catch (TimeoutException e) {
+            abandonTurn(turn, deadline);
+            return false;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            abandonTurn(turn, deadline);
+            return false;
+        } catch (ExecutionException e) {
+            throw new RuntimeException(e.getCause());
+        }
+    }
+
+    /*
+        Takes a turn away from the player, and drops the turn thread, which
+        may be stuck for good.
+     */
+    private void abandonTurn(Future<?> turn, Deadline deadline) {
+        deadline.cancel();
+        turn.cancel(true);
+        turnExecutor.shutdownNow();
+        turnExecutor = null;
+    }
+
+    /*
+        Handles a player that overran its clock (or tampered with the board):
+        either the game is forfeited (returns false), or a fallback move is
+        placed on its behalf.
+     */
+    private boolean onTimeout(Mark mark) {
+        if (timeControl.forfeitsOnTimeout()) {
+            return false;
+        }
+        for (int row = 0; row < Board.SIZE; row++) {
+            for (int col = 0; col < Board.SIZE; col++) {
+                if (board.putMark(mark, row, col)) {
+                    return true;
+                }
+            }
+        }
+        return true;
+    }
+
+    /*
+        Compares the copy the player played on with the game board.
+        Returns the cell of the single mark placed, NO_MOVE if nothing was
+        placed, or ILLEGAL_MOVE if the board was changed in any other way.
+     */
+    private int findPlayedCell(Board copy, Mark mark) {
+        int cell = NO_MOVE;
+        for (int row = 0; row < Board.SIZE; row++) {
+            for (int col = 0; col < Board.SIZE; col++) {
+                if (copy.getMark(row, col) == board.getMark(row, col)) {
+                    continue;
+                }
+                if (cell != NO_MOVE || copy.getMark(row, col) != mark) {
+                    return ILLEGAL_MOVE;
+                }
+                cell = row * Board.SIZE + col;
+            }
+        }
+        return cell;
+    }
+
+    /*
+        Returns the clock time the player has left for this game.
+     */
+    private long remainingGameNanos(int player) {
+        if (timeControl.getGameNanos() == TimeControl.UNLIMITED) {
+            return TimeControl.UNLIMITED;
+        }
+        return Math.max(0, timeControl.getGameNanos() - usedNanos[player]);
+    }
+
+    /*
+        Returns the executor running the turns, creating it if needed.
+        Its single thread is a daemon and dies when idle, so an idle game
+        holds no thread.
+     */
+    private ExecutorService turnExecutor() {
+        if (turnExecutor == null) {
+            ThreadPoolExecutor executor = new ThreadPoolExecutor(1, 1,
+                    IDLE_THREAD_SECONDS, TimeUnit.SECONDS,
+                    new LinkedBlockingQueue<>(), runnable -> {
+                Thread thread = new Thread(runnable, "game-turn");
+                thread.setDaemon(true);
+                return thread;
+            });
+            executor.allowCoreThreadTimeOut(true);
+            turnExecutor = executor;
+        }
+        return turnExecutor;
     }
 
     /* for printing game status (uncomment line 53 above as well):
@@ -0,0 +1,132 @@
+import jdk.jfr.Category;
+import jdk.jfr.DataAmount;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+import jdk.jfr.Timespan;
+
+/**
+ * The Java Flight Recorder events of the games: the start and the end of a
+ * game, every move played and every search run by a player.
+ * The events cost (next to) nothing unless a recording is on, e.g. when
+ * running with -XX:StartFlightRecording=filename=games.jfr: an event is
+ * only filled in and committed if shouldCommit() says it is enabled, and
+ * a disabled event is never allocated once the JIT has compiled its use.
+ *
+ * @author Matanel Pataki
+ */
+public final class GameEvents {
+
+    /* ************ PRIVATE MEMBERS *********** */
+    private static final String CATEGORY = "Tic Tac Toe";
+
+    /*
+        Not to be instantiated.
+     */
+    private GameEvents() {
+    }
+
+    /**
+     * The start of a game.
+     */
+    @Name("tictactoe.GameStarted")
+    @Label("Game Started")
+    @Category(CATEGORY)
+    @StackTrace(false)
+    public static final class GameStarted extends Event {
+        @Label("Player 1")
+        @Description("Type of the first player, playing X")
+        public String player1;
+
+        @Label("Player 2")
+        @Description("Type of the second player, playing O")
+        public String player2;
+    }
+
+    /**
+     * The end of a game.
+     */
+    @Name("tictactoe.GameEnded")
+    @Label("Game Ended")
+    @Category(CATEGORY)
+    @StackTrace(false)
+    public static final class GameEnded extends Event {
+        @Label("Winner")
+        @Description("X, O or BLANK for a draw")
+        public String winner;
+
+        @Label("Turns")
+        public int turns;
+
+        @Label("Game Time")
+        @Timespan
+        public long gameNanos;
+    }
+
+    /**
+     * A single move, lasting as long as the player took to play it.
+     */
+    @Name("tictactoe.MovePlayed")
+    @Label("Move Played")
+    @Category(CATEGORY)
+    @StackTrace(false)
+    public static final class MovePlayed extends Event {
+        @Label("Player")
+        @Description("Type of the player who played the move")
+        public String player;
+
+        @Label("Mark")
+        public String mark;
+
+        @Label("Ply")
+        public int ply;
+
+        @Label("Cell")
+        @Description("row * size + col, -1 if nothing was placed")
+        public int cell;
+    }
+
+    /**
+     * A single search run by a player (e.g. a proof or a threat search).
+     */
+    @Name("tictactoe.SearchIteration")
+    @Label("Search Iteration")
+    @Category(CATEGORY)
+    @StackTrace(false)
+    public static final class SearchIteration extends Event {
+        @Label("Engine")
+        public String engine;
+
+        @Label("Nodes")
+        public long nodes;
+
+        @Label("Result")
+        public String result;
+    }
+
+    /**
+     * The resources a player type used during a tournament (see
+     * PlayerProfiler), committed once the tournament ends.
+     */
+    @Name("tictactoe.PlayerUsage")
+    @Label("Player Usage")
+    @Category(CATEGORY)
+    @StackTrace(false)
+    public static final class PlayerUsage extends Event {
+        @Label("Player")
+        public String player;
+
+        @Label("Moves")
+        public long moves;
+
+        @Label("CPU Time")
+        @Timespan
+        public long cpuNanos;
+
+        @Label("Allocated")
+        @DataAmount
+        public long allocatedBytes;
+    }
+}
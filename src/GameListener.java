@@ -0,0 +1,72 @@
+/**
+ * Interface for an object listening to the course of a game
+ * (e.g. recording it, or collecting statistics).
+ * The listener is called on the thread running the game, so a listener
+ * shared between games played in parallel must be thread safe.
+ *
+ * @author Matanel Pataki
+ */
+public interface GameListener {
+
+    /**
+     * Called before the first turn of a game.
+     *
+     * @param player1 - The first player (playing X).
+     * @param player2 - The second player (playing O).
+     */
+    void gameStarted(Player player1, Player player2);
+
+    /**
+     * Called after each turn of a game.
+     *
+     * @param ply    - The number of the turn, starting at 0.
+     * @param player - The player who played the turn.
+     * @param mark   - The mark of the player.
+     * @param cell   - The cell index (row * Board.SIZE + col) the mark was
+     *               placed in, Board.NO_CELL if the player placed nothing.
+     */
+    void movePlayed(int ply, Player player, Mark mark, int cell);
+
+    /**
+     * Called once a game has ended.
+     *
+     * @param winner - The winner of the game (BLANK for a draw).
+     */
+    void gameEnded(Mark winner);
+
+    /**
+     * Called once a game has ended, with the moves of the game - in place of
+     * gameEnded(Mark), which it calls by default.
+     * A listener reading the moves here need not follow the game move by
+     * move (see followsMoves).
+     *
+     * @param winner - The winner of the game (BLANK for a draw).
+     * @param cells  - The cell placed in on every turn, by ply (X playing
+     *               the even plies), Board.NO_CELL for nothing placed.
+     * @param plies  - The number of turns of the game.
+     */
+    default void gameEnded(Mark winner, int[] cells, int plies) {
+        gameEnded(winner);
+    }
+
+    /**
+     * @return True if the listener is to be notified of every turn (see
+     * movePlayed), False if it reads the moves once the game has ended
+     * (see gameEnded(Mark, int[], int)) - True, by default.
+     */
+    default boolean followsMoves() {
+        return true;
+    }
+
+    /**
+     * Called once by every game the listener is added to, so a listener
+     * shared between games may keep the state of every game apart, with no
+     * lookup of it on every notification.
+     *
+     * @return The listener to notify of the course of the game - this
+     * listener, by default.
+     */
+    default GameListener forGame() {
+        return this;
+    }
+}
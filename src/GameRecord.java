@@ -0,0 +1,153 @@
+/**
+ * Represents a recorded game, as written to a game log by a GameRecorder.
+ * Every game is kept in a single line of the form:
+ *      [player1 type] [player2 type] [moves] [result]
+ * where the moves hold one character per turn - the cell index
+ * (row * Board.SIZE + col) in CELL_ALPHABET, or PASS_CHAR if the player
+ * placed nothing - and the result is X, O or D (a draw).
+ *
+ * @author Matanel Pataki
+ */
+public class GameRecord {
+
+    /* ************ PUBLIC MEMBERS *********** */
+    public static final String CELL_ALPHABET = "0123456789" +
+            "abcdefghijklmnopqrstuvwxyzABCDEFGHIJKLMNOPQRSTUVWXYZ+/";
+    public static final char PASS_CHAR = '.';
+    public static final char DRAW_CHAR = 'D';
+    public static final char SEPARATOR = ' ';
+
+    /* ************ PRIVATE MEMBERS *********** */
+    private static final int FIELDS = 4;
+    private static final int PLAYER1 = 0;
+    private static final int PLAYER2 = 1;
+    private static final int MOVES = 2;
+    private static final int RESULT = 3;
+    private final String player1Type;
+    private final String player2Type;
+    private final String moves;
+    private final Mark winner;
+
+    /**
+     * CONSTRUCTOR -
+     * Initializes the record.
+     *
+     * @param player1Type - The type of the first player (playing X).
+     * @param player2Type - The type of the second player (playing O).
+     * @param moves       - The moves, one character per turn.
+     * @param winner      - The winner of the game (BLANK for a draw).
+     */
+    public GameRecord(String player1Type, String player2Type, String moves,
+                      Mark winner) {
+        this.player1Type = player1Type;
+        this.player2Type = player2Type;
+        this.moves = moves;
+        this.winner = winner;
+    }
+
+    /* ************ PUBLIC METHODS *********** */
+
+    /**
+     * Parses a line of a game log.
+     *
+     * @param line - The line to parse.
+     * @return The game recorded in the line, null if the line is malformed.
+     */
+    public static GameRecord parse(String line) {
+        String[] fields = line.trim().split(String.valueOf(SEPARATOR));
+        if (fields.length != FIELDS || fields[RESULT].length() != 1) {
+            return null;
+        }
+        Mark winner = toMark(fields[RESULT].charAt(0));
+        if (winner == null) {
+            return null;
+        }
+        for (int i = 0; i < fields[MOVES].length(); i++) {
+            char move = fields[MOVES].charAt(i);
+            if (move != PASS_CHAR && (CELL_ALPHABET.indexOf(move) < 0 ||
+                    CELL_ALPHABET.indexOf(move) >= Board.SIZE * Board.SIZE)) {
+                return null;
+            }
+        }
+        return new GameRecord(fields[PLAYER1], fields[PLAYER2],
+                fields[MOVES], winner);
+    }
+
+    /**
+     * @param cell - A cell index, or Board.NO_CELL for a pass.
+     * @return The character representing the move in a game log.
+     */
+    public static char toMoveChar(int cell) {
+        return cell == Board.NO_CELL ? PASS_CHAR : CELL_ALPHABET.charAt(cell);
+    }
+
+    /**
+     * @param winner - The winner of a game (BLANK for a draw).
+     * @return The character representing the result in a game log.
+     */
+    public static char toResultChar(Mark winner) {
+        return winner == Mark.BLANK ? DRAW_CHAR : winner.name().charAt(0);
+    }
+
+    /**
+     * @return The type of the first player (playing X).
+     */
+    public String getPlayer1Type() {
+        return this.player1Type;
+    }
+
+    /**
+     * @return The type of the second player (playing O).
+     */
+    public String getPlayer2Type() {
+        return this.player2Type;
+    }
+
+    /**
+     * @return The winner of the game (BLANK for a draw).
+     */
+    public Mark getWinner() {
+        return this.winner;
+    }
+
+    /**
+     * @return Number of turns played in the game.
+     */
+    public int getTurnCount() {
+        return moves.length();
+    }
+
+    /**
+     * @param turn - The number of the turn, starting at 0.
+     * @return The cell index played at the turn, Board.NO_CELL for a pass.
+     */
+    public int getCell(int turn) {
+        char move = moves.charAt(turn);
+        return move == PASS_CHAR ? Board.NO_CELL : CELL_ALPHABET.indexOf(move);
+    }
+
+    /**
+     * @param turn - The number of the turn, starting at 0.
+     * @return The mark of the player who played the turn.
+     */
+    public Mark getMark(int turn) {
+        return turn % 2 == 0 ? Mark.X : Mark.O;
+    }
+
+    /* ************ PRIVATE METHODS *********** */
+
+    /*
+        Converts a result character of a game log to the winner's mark.
+     */
+    private static Mark toMark(char result) {
+        switch (result) {
+            case 'X':
+                return Mark.X;
+            case 'O':
+                return Mark.O;
+            case DRAW_CHAR:
+                return Mark.BLANK;
+        }
+        return null;
+    }
+}
@@ -0,0 +1,73 @@
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+
+/**
+ * A game listener recording every game it listens to, as a line of a game
+ * log (see GameRecord for the format).
+ * The recorder may be shared between games played in parallel - each thread
+ * builds its own line, and whole lines are written to the log.
+ *
+ * @author Matanel Pataki
+ */
+public class GameRecorder implements GameListener {
+
+    /* ************ PRIVATE MEMBERS *********** */
+    private static final int LINE_CAPACITY = 128;
+    private final Writer out;
+    private final ThreadLocal<StringBuilder> line =
+            ThreadLocal.withInitial(() -> new StringBuilder(LINE_CAPACITY));
+
+    /**
+     * CONSTRUCTOR -
+     * Initializes the recorder.
+     *
+     * @param out - The writer of the game log.
+     */
+    public GameRecorder(Writer out) {
+        this.out = out;
+    }
+
+    /* ************ PUBLIC METHODS *********** */
+
+    @Override
+    public void gameStarted(Player player1, Player player2) {
+        StringBuilder builder = line.get();
+        builder.setLength(0);
+        builder.append(player1.getClass().getSimpleName())
+                .append(GameRecord.SEPARATOR)
+                .append(player2.getClass().getSimpleName())
+                .append(GameRecord.SEPARATOR);
+    }
+
+    @Override
+    public void movePlayed(int ply, Player player, Mark mark, int cell) {
+        line.get().append(GameRecord.toMoveChar(cell));
+    }
+
+    @Override
+    public void gameEnded(Mark winner) {
+        StringBuilder builder = line.get();
+        builder.append(GameRecord.SEPARATOR)
+                .append(GameRecord.toResultChar(winner))
+                .append('\n');
+        try {
+            synchronized (out) {
+                out.append(builder);
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /**
+     * Flushes and closes the game log.
+     *
+     * @throws IOException If the log could not be written.
+     */
+    public void close() throws IOException {
+        synchronized (out) {
+            out.close();
+        }
+    }
+}
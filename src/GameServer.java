@@ -0,0 +1,396 @@
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.util.Iterator;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * A game server, letting remote engines play against the bundled players.
+ * Every connection hosts one game at a time, and all the connections are
+ * served by a single non-blocking selector thread, so many concurrent games
+ * are hosted without a thread (or a JVM) per game.
+ * The turns of the bundled players are played on a pool of bot threads (a
+ * thread per core), so a slow player never stalls the other connections:
+ * while its opponent is thinking, a session is not read from, and once the
+ * turns are done their replies are posted back to the selector thread.
+ * The remote client takes part in the game through a RemotePlayer.
+ *
+ * The wire protocol - every message is a single byte:
+ *  client to server:
+ *      hello - (side << 4) | opponent, starting a new game. side is 0 for
+ *              playing X (first), 1 for playing O. opponent is the index of
+ *              the opponent type in OPPONENTS.
+ *      move  - the cell index (row * Board.SIZE + col) to place the mark in.
+ *  server to client:
+ *      move  - the cell index the opponent placed its mark in.
+ *      PASS  - the opponent did not place a mark this turn.
+ *      END_X_WON / END_O_WON / END_DRAW - the game ended, a hello may follow.
+ *      ERROR - a bad message was received, the connection is closed.
+ *
+ * @author Matanel Pataki
+ */
+public class GameServer {
+
+    /* ************ PUBLIC MEMBERS *********** */
+    public static final String[] OPPONENTS = {PlayerFactory.WHATEVER,
+            PlayerFactory.CLEVER, PlayerFactory.SNARTYPAMTS};
+    public static final int PASS = 0x40;
+    public static final int END_X_WON = 0x80;
+    public static final int END_O_WON = 0x81;
+    public static final int END_DRAW = 0x82;
+    public static final int ERROR = 0xFF;
+    public static final int SIDE_SHIFT = 4;
+
+    /* ************ PRIVATE MEMBERS *********** */
+    private static final String USAGE_ERR = "Usage: java GameServer [port]";
+    private static final String LISTENING_MSG = "Game server listening on %d";
+    private static final int OPPONENT_MASK = 0x0F;
+    private static final int BUFFER_SIZE = 256;
+    private static final int BACKLOG = 4096;
+    private static final int MAX_REPLY_SIZE = 2; // opponent move and result
+    private static final String BOT_THREAD_NAME = "bot-turns";
+    private final Selector selector;
+    private final ServerSocketChannel serverChannel;
+    private final PlayerFactory playerFactory = new PlayerFactory();
+    private final Renderer renderer = new VoidRenderer();
+    private final ExecutorService botThreads = Executors.newFixedThreadPool(
+            Runtime.getRuntime().availableProcessors(), runnable -> {
+                Thread thread = new Thread(runnable, BOT_THREAD_NAME);
+                thread.setDaemon(true);
+                return thread;
+            });
+    // sessions whose bot turns are done, to be resumed by the selector:
+    private final Queue<Session> played = new ConcurrentLinkedQueue<>();
+    private volatile boolean running = true;
+
+    /**
+     * CONSTRUCTOR -
+     * Opens the server socket on the loopback interface.
+     *
+     * @param port - The port to listen on, 0 for any free port.
+     * @throws IOException If the socket could not be opened.
+     */
+    public GameServer(int port) throws IOException {
+        this.selector = Selector.open();
+        this.serverChannel = ServerSocketChannel.open();
+        serverChannel.bind(new InetSocketAddress("127.0.0.1", port), BACKLOG);
+        serverChannel.configureBlocking(false);
+        serverChannel.register(selector, SelectionKey.OP_ACCEPT);
+    }
+
+    /* ************ PUBLIC METHODS *********** */
+
+    /**
+     * @return The port the server is listening on.
+     */
+    public int getPort() {
+        return serverChannel.socket().getLocalPort();
+    }
+
+    /**
+     * Serves the connections until stop() is called.
+     *
+     * @throws IOException If the selector failed.
+     */
+    public void serve() throws IOException {
+        while (running) {
+            selector.select();
+            resumeSessions();
+            Iterator<SelectionKey> keys = selector.selectedKeys().iterator();
+            while (keys.hasNext()) {
+                SelectionKey key = keys.next();
+                keys.remove();
+                if (!key.isValid()) {
+                    continue;
+                }
+                if (key.isAcceptable()) {
+                    accept();
+                } else {
+                    serveSession(key);
+                }
+            }
+        }
+        for (SelectionKey key : selector.keys()) {
+            key.channel().close();
+        }
+        selector.close();
+        botThreads.shutdownNow();
+    }
+
+    /**
+     * Stops the server, closing all its connections.
+     */
+    public void stop() {
+        running = false;
+        selector.wakeup();
+    }
+
+    /* ************ PRIVATE METHODS *********** */
+
+    /*
+        Accepts all pending connections.
+     */
+    private void accept() throws IOException {
+        SocketChannel channel;
+        while ((channel = serverChannel.accept()) != null) {
+            channel.configureBlocking(false);
+            channel.socket().setTcpNoDelay(true);
+            Session session = new Session(channel);
+            session.key = channel.register(selector, SelectionKey.OP_READ,
+                    session);
+        }
+    }
+
+    /*
+        Reads the messages of a session and writes its replies.
+        Closes the connection on end of stream, IO errors or protocol errors.
+     */
+    private void serveSession(SelectionKey key) {
+        Session session = (Session) key.attachment();
+        try {
+            boolean open = true;
+            if (key.isReadable()) {
+                open = readMessages(session);
+            }
+            open &= flush(session, key);
+            if (!open) {
+                key.channel().close();
+            }
+        } catch (IOException e) {
+            try {
+                key.channel().close();
+            } catch (IOException ignored) {
+                // already closing
+            }
+        }
+    }
+
+    /*
+        Reads and handles all the bytes available on the session's channel.
+        Returns false if the connection should be closed.
+     */
+    private boolean readMessages(Session session) throws IOException {
+        int read = session.channel.read(session.in);
+        if (read < 0) {
+            return false;
+        }
+        return handleMessages(session);
+    }
+
+    /*
+        Handles the bytes received from the client, until its opponent
+        starts thinking (the rest is kept for when it is done).
+        Returns false if the connection should be closed.
+     */
+    private boolean handleMessages(Session session) {
+        session.in.flip();
+        boolean open = true;
+        while (open && !session.thinking && session.in.hasRemaining()) {
+            // a client that does not read its replies is dropped:
+            open = session.out.remaining() >= MAX_REPLY_SIZE &&
+                    handleMessage(session, session.in.get() & 0xFF);
+        }
+        session.in.compact();
+        if (!open && session.out.hasRemaining()) {
+            session.out.put((byte) ERROR);
+        }
+        return open;
+    }
+
+    /*
+        Writes the pending replies of the session, waiting for the channel
+        to become writable if they could not be written at once. The
+        session is not read from while its opponent is thinking.
+        Returns false if the client does not read its replies.
+     */
+    private boolean flush(Session session, SelectionKey key)
+            throws IOException {
+        session.out.flip();
+        session.channel.write(session.out);
+        session.out.compact();
+        int read = session.thinking ? 0 : SelectionKey.OP_READ;
+        if (session.out.position() > 0) {
+            key.interestOps(read | SelectionKey.OP_WRITE);
+            return session.out.remaining() > BUFFER_SIZE / 2;
+        }
+        key.interestOps(read);
+        return true;
+    }
+
+    /*
+        Resumes the sessions whose bot turns are done: sends their replies,
+        and handles the messages received meanwhile.
+     */
+    private void resumeSessions() {
+        Session session;
+        while ((session = played.poll()) != null) {
+            SelectionKey key = session.key;
+            if (!key.isValid()) {
+                continue;
+            }
+            session.out.put(session.reply, 0, session.replySize);
+            session.thinking = false;
+            try {
+                if (!(handleMessages(session) & flush(session, key))) {
+                    key.channel().close();
+                }
+            } catch (IOException e) {
+                try {
+                    key.channel().close();
+                } catch (IOException ignored) {
+                    // already closing
+                }
+            }
+        }
+    }
+
+    /*
+        Handles a single byte received from the client.
+        Returns false on a protocol error.
+     */
+    private boolean handleMessage(Session session, int message) {
+        if (session.game == null || session.game.gameEnded()) {
+            return startGame(session, message);
+        }
+        Board board = session.game.getBoard();
+        if (message >= Board.SIZE * Board.SIZE ||
+                board.getMark(message / Board.SIZE, message % Board.SIZE)
+                        != Mark.BLANK) {
+            return false;
+        }
+        session.remote.offerMove(message);
+        session.game.playNextTurn();
+        playOpponentTurns(session);
+        return true;
+    }
+
+    /*
+        Starts a new game according to the hello message of the client.
+        Returns false if the message is not a valid hello.
+     */
+    private boolean startGame(Session session, int hello) {
+        int opponent = hello & OPPONENT_MASK;
+        int side = hello >> SIDE_SHIFT;
+        if (opponent >= OPPONENTS.length || side > 1) {
+            return false;
+        }
+        Player bot = playerFactory.buildPlayer(OPPONENTS[opponent]);
+        session.remote = new RemotePlayer();
+        if (side == 0) {
+            session.game = new Game(session.remote, bot, renderer);
+            session.remoteMark = Mark.X;
+        } else {
+            session.game = new Game(bot, session.remote, renderer);
+            session.remoteMark = Mark.O;
+        }
+        playOpponentTurns(session);
+        return true;
+    }
+
+    /*
+        Plays the turns of the bundled player on the bot threads, if it is
+        its turn, until it is the client's turn again. The moves, and the
+        result once the game has ended, are sent to the client when the
+        session is resumed.
+     */
+    private void playOpponentTurns(Session session) {
+        Game game = session.game;
+        session.replySize = 0;
+        if (game.gameEnded() ||
+                game.getCurrentMark() == session.remoteMark) {
+            putResult(session);
+            session.out.put(session.reply, 0, session.replySize);
+            return;
+        }
+        session.thinking = true;
+        botThreads.execute(() -> {
+            try {
+                while (!game.gameEnded() &&
+                        game.getCurrentMark() != session.remoteMark) {
+                    BoardSnapshot before = game.getBoard().snapshot();
+                    game.playNextTurn();
+                    session.reply[session.replySize++] = (byte)
+                            findPlacedCell(before.getXBits() |
+                                    before.getOBits(), game.getBoard());
+                }
+                putResult(session);
+            } finally {
+                played.add(session);
+                selector.wakeup();
+            }
+        });
+    }
+
+    /*
+        Adds the result of the session's game to its reply, if the game has
+        ended.
+     */
+    private static void putResult(Session session) {
+        Game game = session.game;
+        if (!game.gameEnded()) {
+            return;
+        }
+        switch (game.getWinner()) {
+            case X:
+                session.reply[session.replySize++] = (byte) END_X_WON;
+                break;
+            case O:
+                session.reply[session.replySize++] = (byte) END_O_WON;
+                break;
+            case BLANK:
+                session.reply[session.replySize++] = (byte) END_DRAW;
+        }
+    }
+
+    /*
+        Returns the cell taken on the board since the given occupancy, or
+        PASS if no cell was taken.
+     */
+    private static int findPlacedCell(long occupiedBefore, Board board) {
+        BoardSnapshot snapshot = board.snapshot();
+        long placed = (snapshot.getXBits() | snapshot.getOBits())
+                & ~occupiedBefore;
+        return placed == 0 ? PASS : Long.numberOfTrailingZeros(placed);
+    }
+
+    /*
+        The state of a single connection.
+     */
+    private static final class Session {
+        private final SocketChannel channel;
+        private final ByteBuffer in = ByteBuffer.allocate(BUFFER_SIZE);
+        private final ByteBuffer out = ByteBuffer.allocate(BUFFER_SIZE);
+        private SelectionKey key;
+        private Game game;
+        private RemotePlayer remote;
+        private Mark remoteMark;
+        // the replies of the bot turns, written by a bot thread while the
+        // session is thinking:
+        private final byte[] reply = new byte[MAX_REPLY_SIZE];
+        private int replySize;
+        private boolean thinking;
+
+        private Session(SocketChannel channel) {
+            this.channel = channel;
+        }
+    }
+
+    /* ************ MAIN *********** */
+
+    public static void main(String[] args) throws IOException {
+        if (args.length != 1) {
+            System.err.println(USAGE_ERR);
+            return;
+        }
+        GameServer server = new GameServer(Integer.parseInt(args[0]));
+        System.out.println(String.format(LISTENING_MSG, server.getPort()));
+        server.serve();
+    }
+}
@@ -0,0 +1,274 @@
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.SocketChannel;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.Random;
+
+/**
+ * A load generator for the game server.
+ * Opens many loopback client connections (all served by a single selector
+ * thread), each playing random legal moves through the server's wire protocol
+ * against one of the bundled players, and reports the throughput and the
+ * latency of the server's replies.
+ * Unless a port is given, a game server is started in the same process.
+ *
+ * @author Matanel Pataki
+ */
+public class LoadGenerator {
+
+    /* ************ PRIVATE MEMBERS *********** */
+    private static final String USAGE_ERR = "Usage: java LoadGenerator" +
+            " [game count] [concurrent games]" +
+            " [opponent: whatever/clever/snartypamts] [optional - port]";
+    private static final String REPORT_MSG = "=== games: %d | concurrent: %d" +
+            " | %.1f games/s | errors: %d ===%n" +
+            "reply latency (us): p50 %.1f | p90 %.1f | p99 %.1f | p99.9 %.1f" +
+            " | max %.1f (%d replies)%n";
+    private static final String SERVER_ERR = "Game server failed: %s";
+    private static final int GAMES = 0;
+    private static final int CONCURRENCY = 1;
+    private static final int OPPONENT = 2;
+    private static final int PORT = 3;
+    private static final int BUFFER_SIZE = 64;
+    private static final double NANOS_IN_MICRO = 1000.0;
+    private final int games;
+    private final int concurrency;
+    private final int opponent;
+    private final int port;
+    private final Random random = new Random();
+    private long[] latencies = new long[1 << 16]; // reply latencies, in ns
+    private int replies;
+    private int gamesStarted;
+    private int gamesFinished;
+    private int errors;
+
+    /**
+     * CONSTRUCTOR -
+     * Initializes the load generator.
+     *
+     * @param games       - Total number of games to play.
+     * @param concurrency - Number of games played at the same time.
+     * @param opponent    - Index of the opponent in GameServer.OPPONENTS.
+     * @param port        - The port of the game server on the loopback.
+     */
+    public LoadGenerator(int games, int concurrency, int opponent, int port) {
+        this.games = games;
+        this.concurrency = concurrency;
+        this.opponent = opponent;
+        this.port = port;
+    }
+
+    /* ************ PUBLIC METHODS *********** */
+
+    /**
+     * Plays all the games and prints the report.
+     *
+     * @throws IOException If a connection could not be made.
+     */
+    public void run() throws IOException {
+        Selector selector = Selector.open();
+        InetSocketAddress address = new InetSocketAddress("127.0.0.1", port);
+        long start = System.nanoTime();
+        for (int i = 0; i < concurrency && gamesStarted < games; i++) {
+            SocketChannel channel = SocketChannel.open(address);
+            channel.socket().setTcpNoDelay(true);
+            channel.configureBlocking(false);
+            Client client = new Client(channel);
+            channel.register(selector, SelectionKey.OP_READ, client);
+            startGame(client);
+        }
+        while (gamesFinished + errors < games && !selector.keys().isEmpty()) {
+            selector.select();
+            Iterator<SelectionKey> keys = selector.selectedKeys().iterator();
+            while (keys.hasNext()) {
+                SelectionKey key = keys.next();
+                keys.remove();
+                if (!readReplies(key)) {
+                    key.channel().close();
+                }
+            }
+        }
+        long elapsed = System.nanoTime() - start;
+        for (SelectionKey key : selector.keys()) {
+            key.channel().close();
+        }
+        selector.close();
+        printReport(elapsed);
+    }
+
+    /* ************ PRIVATE METHODS *********** */
+
+    /*
+        Handles all the replies available for a client.
+        Returns false if the client's connection should be closed.
+     */
+    private boolean readReplies(SelectionKey key) throws IOException {
+        Client client = (Client) key.attachment();
+        ByteBuffer in = client.in;
+        if (client.channel.read(in) < 0) {
+            errors++;
+            return false;
+        }
+        in.flip();
+        while (in.hasRemaining()) {
+            int reply = in.get() & 0xFF;
+            if (client.sentAt != 0) {
+                recordLatency(System.nanoTime() - client.sentAt);
+                client.sentAt = 0;
+            }
+            if (reply == GameServer.ERROR) {
+                errors++;
+                return false;
+            }
+            if (reply >= GameServer.END_X_WON) {
+                gamesFinished++;
+                if (gamesStarted == games) {
+                    in.clear();
+                    return true; // nothing left to play on this connection
+                }
+                startGame(client);
+                continue;
+            }
+            if (reply != GameServer.PASS) {
+                client.board.putMark(client.opponentMark,
+                        reply / Board.SIZE, reply % Board.SIZE);
+            }
+            if (!client.board.gameEnded()) {
+                playMove(client);
+            }
+        }
+        in.clear();
+        return true;
+    }
+
+    /*
+        Starts a new game for the client, alternating its side between games.
+     */
+    private void startGame(Client client) throws IOException {
+        int side = gamesStarted % 2;
+        gamesStarted++;
+        client.board = new Board();
+        client.mark = side == 0 ? Mark.X : Mark.O;
+        client.opponentMark = side == 0 ? Mark.O : Mark.X;
+        send(client, (side << GameServer.SIDE_SHIFT) | opponent);
+        if (client.mark == Mark.X) {
+            playMove(client);
+        }
+    }
+
+    /*
+        Plays a random legal move for the client.
+     */
+    private void playMove(Client client) throws IOException {
+        int cell;
+        do {
+            cell = random.nextInt(Board.SIZE * Board.SIZE);
+        } while (!client.board.putMark(client.mark,
+                cell / Board.SIZE, cell % Board.SIZE));
+        send(client, cell);
+        client.sentAt = System.nanoTime();
+    }
+
+    /*
+        Sends a single byte message to the server.
+     */
+    private void send(Client client, int message) throws IOException {
+        client.out.clear();
+        client.out.put((byte) message);
+        client.out.flip();
+        while (client.out.hasRemaining()) {
+            client.channel.write(client.out);
+        }
+    }
+
+    /*
+        Records the latency of a single reply.
+     */
+    private void recordLatency(long nanos) {
+        if (replies == latencies.length) {
+            latencies = Arrays.copyOf(latencies, latencies.length * 2);
+        }
+        latencies[replies++] = nanos;
+    }
+
+    /*
+        Prints the throughput and the latency percentiles.
+     */
+    private void printReport(long elapsedNanos) {
+        long[] sorted = Arrays.copyOf(latencies, replies);
+        Arrays.sort(sorted);
+        System.out.printf(REPORT_MSG, gamesFinished, concurrency,
+                gamesFinished / (elapsedNanos / 1e9), errors,
+                percentile(sorted, 0.5), percentile(sorted, 0.9),
+                percentile(sorted, 0.99), percentile(sorted, 0.999),
+                percentile(sorted, 1), replies);
+    }
+
+    /*
+        Returns the given percentile of the sorted latencies, in microseconds.
+     */
+    private static double percentile(long[] sorted, double fraction) {
+        if (sorted.length == 0) {
+            return 0;
+        }
+        int index = (int) Math.min(sorted.length - 1,
+                Math.ceil(fraction * sorted.length) - 1);
+        return sorted[Math.max(0, index)] / NANOS_IN_MICRO;
+    }
+
+    /*
+        The state of a single client connection.
+     */
+    private static final class Client {
+        private final SocketChannel channel;
+        private final ByteBuffer in = ByteBuffer.allocate(BUFFER_SIZE);
+        private final ByteBuffer out = ByteBuffer.allocate(1);
+        private Board board;
+        private Mark mark;
+        private Mark opponentMark;
+        private long sentAt; // time the last move was sent, 0 if answered
+
+        private Client(SocketChannel channel) {
+            this.channel = channel;
+        }
+    }
+
+    /* ************ MAIN *********** */
+
+    public static void main(String[] args) throws Exception {
+        int opponent = args.length < 3 ? -1 :
+                Arrays.asList(GameServer.OPPONENTS).indexOf(args[OPPONENT]);
+        if (args.length < 3 || args.length > 4 || opponent < 0) {
+            System.err.println(USAGE_ERR);
+            return;
+        }
+        GameServer server = null;
+        int port;
+        if (args.length == 4) {
+            port = Integer.parseInt(args[PORT]);
+        } else {
+            server = new GameServer(0);
+            port = server.getPort();
+            GameServer localServer = server;
+            Thread serverThread = new Thread(() -> {
+                try {
+                    localServer.serve();
+                } catch (IOException e) {
+                    System.err.println(String.format(SERVER_ERR,
+                            e.getMessage()));
+                }
+            }, "game-server");
+            serverThread.setDaemon(true);
+            serverThread.start();
+        }
+        new LoadGenerator(Integer.parseInt(args[GAMES]),
+                Integer.parseInt(args[CONCURRENCY]), opponent, port).run();
+        if (server != null) {
+            server.stop();
+        }
+    }
+}
@@ -2,6 +2,4 @@
  * @author Matanel Pataki
  */
 
-enum Mark {X, O, BLANK} // Represents a mark to place on the board
-
-enum Direction {U, R, D, L, UR, UL, DR, DL} // Represents direction of a player
\ No newline at end of file
+enum Mark {X, O, BLANK} // Represents a mark to place on the board
\ No newline at end of file
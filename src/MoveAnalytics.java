@@ -0,0 +1,314 @@
+import java.io.IOException;
+import java.io.PrintStream;
+import java.io.Writer;
+import java.util.Arrays;
+import java.util.IdentityHashMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Queue;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+
+/**
+ * A game listener collecting where every type of player places its marks,
+ * by the number of the move (ply), and how every placement correlates with
+ * the outcome of the game.
+ * The analytics may be shared between games played in parallel - every
+ * game is given a recorder of its own (see forGame), which does not follow
+ * the game move by move, but reads the moves of the game once it has ended
+ * (see GameListener.followsMoves), and adds them to its own counters (plain
+ * arrays, striped by game) in batches of ended games, so recording a game
+ * costs nothing while it is played, and looks nothing up, allocates
+ * nothing, takes no lock and shares no cache line with other games. The
+ * counters of all the recorders are summed up when reporting, which should
+ * be done once the games are over.
+ * The results are printed as heatmaps of the board, and written as CSV.
+ *
+ * @author Matanel Pataki
+ */
+public class MoveAnalytics implements GameListener {
+
+    /* ************ PRIVATE MEMBERS *********** */
+    private static final int CELLS = Board.SIZE * Board.SIZE;
+    private static final int PLIES = CELLS;
+    private static final int WON = 0;
+    private static final int LOST = 1;
+    private static final int DRAWN = 2;
+    private static final int OUTCOMES = 3;
+    private static final String CSV_HEADER =
+            "player,ply,cell,row,col,wins,losses,draws";
+    private static final String CSV_ROW = "%s,%d,%d,%d,%d,%d,%d,%d%n";
+    private static final String PLAYER_MSG = "=== %s: %d moves ===";
+    private static final String SHARE_MSG =
+            "placements (% of moves)           win rate (% of games placing)";
+    private static final String SHARE_CELL = "%5.1f";
+    private static final String GAP = "    ";
+    private static final int COUNTERS = OUTCOMES * PLIES * CELLS;
+    private static final int BATCH = 1 << 12; // counts to make at once
+    private static final int[] X_WON_OFFSETS = {indexOf(WON, 0, 0),
+            indexOf(LOST, 0, 0)};
+    private static final int[] O_WON_OFFSETS = {indexOf(LOST, 0, 0),
+            indexOf(WON, 0, 0)};
+    private static final int[] DRAWN_OFFSETS = {indexOf(DRAWN, 0, 0),
+            indexOf(DRAWN, 0, 0)};
+    // the moves and the counters of every game played:
+    private final Queue<Moves> games = new ConcurrentLinkedQueue<>();
+    private Moves direct; // notified directly, rather than through a game
+
+    /*
+        The recorder of a game: the counters of the games - placements by
+        player type, outcome, ply and cell, COUNTERS per player type. The
+        counts of the ended games are batched, and made all at once (their
+        counters being scattered, they are made faster in a row than
+        between the games).
+     */
+    private static final class Moves implements GameListener {
+        // the offset of the counters of every player type:
+        final Map<Class<?>, Integer> types = new IdentityHashMap<>();
+        long[] counters = new long[0];
+        final int[] players = new int[2]; // offsets of X, then of O
+        final Class<?>[] playerTypes = new Class<?>[2]; // of the offsets
+        // the cells of a game notified move by move (see movePlayed):
+        final int[] cells = new int[PLIES];
+        int plies;
+        final int[] batch = new int[BATCH]; // of the counters to increment
+        int batched;
+
+        @Override
+        public void gameStarted(Player player1, Player player2) {
+            // the players of a game are most often those of the last one:
+            if (player1.getClass() != playerTypes[0]) {
+                playerTypes[0] = player1.getClass();
+                players[0] = offsetOf(playerTypes[0]);
+            }
+            if (player2.getClass() != playerTypes[1]) {
+                playerTypes[1] = player2.getClass();
+                players[1] = offsetOf(playerTypes[1]);
+            }
+            plies = 0;
+        }
+
+        @Override
+        public boolean followsMoves() {
+            return false;
+        }
+
+        /*
+            Only called when notified directly (a game reads the moves once
+            it has ended, see gameEnded(Mark, int[], int)).
+         */
+        @Override
+        public void movePlayed(int ply, Player player, Mark mark, int cell) {
+            if (ply < PLIES) {
+                cells[ply] = cell;
+                plies = ply + 1;
+            }
+        }
+
+        @Override
+        public void gameEnded(Mark winner) {
+            gameEnded(winner, cells, plies);
+        }
+
+        @Override
+        public void gameEnded(Mark winner, int[] cells, int plies) {
+            // the offsets of the counters of the outcome of X, then of O:
+            int[] outcomes = winner == Mark.BLANK ? DRAWN_OFFSETS :
+                    winner == Mark.X ? X_WON_OFFSETS : O_WON_OFFSETS;
+            plies = Math.min(plies, PLIES);
+            if (batched + plies > BATCH) {
+                count();
+            }
+            int x = players[0] + outcomes[0];
+            int o = players[1] + outcomes[1];
+            for (int ply = 0; ply < plies; ply++) {
+                int cell = cells[ply];
+                if (cell != Board.NO_CELL) {
+                    batch[batched++] = ((ply & 1) == 0 ? x : o) +
+                            ply * CELLS + cell;
+                }
+            }
+            this.plies = 0;
+        }
+
+        /*
+            Makes the batched counts.
+         */
+        void count() {
+            for (int i = 0; i < batched; i++) {
+                counters[batch[i]]++;
+            }
+            batched = 0;
+        }
+
+        /*
+            Returns the offset of the counters of a player type, adding
+            them on its first game.
+         */
+        int offsetOf(Class<?> type) {
+            Integer offset = types.get(type);
+            if (offset == null) {
+                offset = counters.length;
+                counters = Arrays.copyOf(counters, offset + COUNTERS);
+                types.put(type, offset);
+            }
+            return offset;
+        }
+    }
+
+    /* ************ PUBLIC METHODS *********** */
+
+    /**
+     * @return A recorder of its own for the game the analytics are added
+     * to, counting into the analytics.
+     */
+    @Override
+    public GameListener forGame() {
+        Moves moves = new Moves();
+        games.add(moves);
+        return moves;
+    }
+
+    /**
+     * Records the start of a game notified directly, rather than through
+     * the recorder of the game (see forGame); games notified directly are
+     * recorded one at a time.
+     *
+     * @param player1 - The first player (playing X).
+     * @param player2 - The second player (playing O).
+     */
+    @Override
+    public synchronized void gameStarted(Player player1, Player player2) {
+        if (direct == null) {
+            direct = (Moves) forGame();
+        }
+        direct.gameStarted(player1, player2);
+    }
+
+    @Override
+    public synchronized void movePlayed(int ply, Player player, Mark mark,
+                                        int cell) {
+        direct.movePlayed(ply, player, mark, cell);
+    }
+
+    @Override
+    public synchronized void gameEnded(Mark winner) {
+        direct.gameEnded(winner);
+    }
+
+    /**
+     * Prints, for every player type, a heatmap of the share of its moves
+     * placed in every cell, and of the rate of the games it won after
+     * placing a mark in the cell.
+     *
+     * @param out - The stream to print to.
+     */
+    public void printHeatmaps(PrintStream out) {
+        for (Map.Entry<String, long[]> entry : merge().entrySet()) {
+            long[][] byCell = sumByCell(entry.getValue());
+            long total = 0;
+            for (int cell = 0; cell < CELLS; cell++) {
+                total += byCell[cell][WON] + byCell[cell][LOST] +
+                        byCell[cell][DRAWN];
+            }
+            out.println(String.format(PLAYER_MSG, entry.getKey(), total));
+            out.println(SHARE_MSG);
+            for (int row = 0; row < Board.SIZE; row++) {
+                StringBuilder line = new StringBuilder();
+                for (int col = 0; col < Board.SIZE; col++) {
+                    long[] cell = byCell[row * Board.SIZE + col];
+                    line.append(String.format(SHARE_CELL, percent(
+                            cell[WON] + cell[LOST] + cell[DRAWN], total)));
+                }
+                line.append(GAP);
+                for (int col = 0; col < Board.SIZE; col++) {
+                    long[] cell = byCell[row * Board.SIZE + col];
+                    line.append(String.format(SHARE_CELL, percent(cell[WON],
+                            cell[WON] + cell[LOST] + cell[DRAWN])));
+                }
+                out.println(line);
+            }
+        }
+    }
+
+    /**
+     * Writes the counters as CSV: a row per player type, ply and cell a
+     * mark was ever placed in, with the outcomes of the games.
+     *
+     * @param out - The writer of the CSV.
+     * @throws IOException If the CSV could not be written.
+     */
+    public void writeCsv(Writer out) throws IOException {
+        out.write(CSV_HEADER);
+        out.write(System.lineSeparator());
+        for (Map.Entry<String, long[]> entry : merge().entrySet()) {
+            long[] player = entry.getValue();
+            for (int ply = 0; ply < PLIES; ply++) {
+                for (int cell = 0; cell < CELLS; cell++) {
+                    long wins = player[indexOf(WON, ply, cell)];
+                    long losses = player[indexOf(LOST, ply, cell)];
+                    long draws = player[indexOf(DRAWN, ply, cell)];
+                    if (wins + losses + draws > 0) {
+                        out.write(String.format(Locale.ROOT, CSV_ROW,
+                                entry.getKey(), ply, cell, cell / Board.SIZE,
+                                cell % Board.SIZE, wins, losses, draws));
+                    }
+                }
+            }
+        }
+        out.flush();
+    }
+
+    /* ************ PRIVATE METHODS *********** */
+
+    /*
+        Sums the counters of all the games, by player type.
+     */
+    private Map<String, long[]> merge() {
+        Map<String, long[]> merged = new TreeMap<>();
+        for (Moves moves : games) {
+            moves.count();
+            for (Map.Entry<Class<?>, Integer> entry :
+                    moves.types.entrySet()) {
+                long[] sum = merged.computeIfAbsent(
+                        entry.getKey().getSimpleName(),
+                        type -> new long[COUNTERS]);
+                for (int i = 0; i < COUNTERS; i++) {
+                    sum[i] += moves.counters[entry.getValue() + i];
+                }
+            }
+        }
+        return merged;
+    }
+
+    /*
+        Returns the index of a counter.
+     */
+    private static int indexOf(int outcome, int ply, int cell) {
+        return (outcome * PLIES + ply) * CELLS + cell;
+    }
+
+    /*
+        Sums the counters of a player type over all the plies: the
+        placements of every cell, by outcome.
+     */
+    private static long[][] sumByCell(long[] player) {
+        long[][] byCell = new long[CELLS][OUTCOMES];
+        for (int outcome = 0; outcome < OUTCOMES; outcome++) {
+            for (int ply = 0; ply < PLIES; ply++) {
+                for (int cell = 0; cell < CELLS; cell++) {
+                    byCell[cell][outcome] +=
+                            player[indexOf(outcome, ply, cell)];
+                }
+            }
+        }
+        return byCell;
+    }
+
+    /*
+        Returns the part as a percentage of the whole (0 for no whole).
+     */
+    private static double percent(long part, long whole) {
+        return whole == 0 ? 0 : 100.0 * part / whole;
+    }
+}
@@ -0,0 +1,138 @@
+/**
+ * The hidden layer accumulators of a NeuralNetwork for a single position:
+ * the bias plus the weights of every active input feature, per perspective.
+ * Placing or removing a mark updates both perspectives with a single column
+ * of weights each, instead of recomputing the layer (the NNUE trick).
+ * The accumulators remember the marks they hold, so they can be brought up
+ * to date with a board that has moved on by a few marks (see sync).
+ *
+ * @author Matanel Pataki
+ */
+public final class NeuralAccumulator {
+
+    /* ************ PRIVATE MEMBERS *********** */
+    private final NeuralNetwork network;
+    private final short[] xValues; // from X's perspective
+    private final short[] oValues; // from O's perspective
+    private long xBits; // the marks held, a bit per cell
+    private long oBits;
+
+    /**
+     * CONSTRUCTOR -
+     * Initializes the accumulators of an empty board.
+     *
+     * @param network - The network to accumulate the hidden layer of.
+     */
+    public NeuralAccumulator(NeuralNetwork network) {
+        this.network = network;
+        this.xValues = new short[network.getHiddenSize()];
+        this.oValues = new short[network.getHiddenSize()];
+        clear();
+    }
+
+    /* ************ PUBLIC METHODS *********** */
+
+    /**
+     * Resets the accumulators to those of an empty board.
+     */
+    public void clear() {
+        short[] biases = network.getBiases();
+        System.arraycopy(biases, 0, xValues, 0, biases.length);
+        System.arraycopy(biases, 0, oValues, 0, biases.length);
+        xBits = 0;
+        oBits = 0;
+    }
+
+    /**
+     * Copies the accumulators of another position (of the same network).
+     *
+     * @param other - The accumulators to copy.
+     */
+    public void copyFrom(NeuralAccumulator other) {
+        System.arraycopy(other.xValues, 0, xValues, 0, xValues.length);
+        System.arraycopy(other.oValues, 0, oValues, 0, oValues.length);
+        xBits = other.xBits;
+        oBits = other.oBits;
+    }
+
+    /**
+     * Places a mark.
+     *
+     * @param mark - The mark placed.
+     * @param cell - Index of the cell (row * SIZE + col).
+     */
+    public void add(Mark mark, int cell) {
+        update(mark, cell, 1);
+    }
+
+    /**
+     * Removes a mark.
+     *
+     * @param mark - The mark removed.
+     * @param cell - Index of the cell (row * SIZE + col).
+     */
+    public void remove(Mark mark, int cell) {
+        update(mark, cell, -1);
+    }
+
+    /**
+     * Brings the accumulators up to date with the given board, updating only
+     * the cells that changed.
+     *
+     * @param board - The board to follow.
+     */
+    public void sync(Board board) {
+        for (int cell = 0; cell < NeuralNetwork.CELLS; cell++) {
+            Mark held = (xBits & (1L << cell)) != 0 ? Mark.X :
+                    (oBits & (1L << cell)) != 0 ? Mark.O : Mark.BLANK;
+            Mark actual = board.getMark(cell / Board.SIZE, cell % Board.SIZE);
+            if (held == actual) {
+                continue;
+            }
+            if (held != Mark.BLANK) {
+                remove(held, cell);
+            }
+            if (actual != Mark.BLANK) {
+                add(actual, cell);
+            }
+        }
+    }
+
+    /**
+     * @return The cells holding a mark (of either side), a bit per cell.
+     */
+    public long getMarkedCells() {
+        return xBits | oBits;
+    }
+
+    /**
+     * @param perspective - The mark whose perspective to take.
+     * @return The accumulated hidden layer (not to be changed).
+     */
+    short[] getValues(Mark perspective) {
+        return perspective == Mark.X ? xValues : oValues;
+    }
+
+    /* ************ PRIVATE METHODS *********** */
+
+    /*
+        Adds (sign 1) or subtracts (sign -1) the weights of a mark to the
+        accumulators of both perspectives.
+     */
+    private void update(Mark mark, int cell, int sign) {
+        short[] own = mark == Mark.X ? xValues : oValues;
+        short[] opponent = mark == Mark.X ? oValues : xValues;
+        short[] ownWeights = network.getInputWeights(cell);
+        short[] opponentWeights =
+                network.getInputWeights(NeuralNetwork.CELLS + cell);
+        for (int h = 0; h < own.length; h++) {
+            own[h] += sign * ownWeights[h];
+            opponent[h] += sign * opponentWeights[h];
+        }
+        if (mark == Mark.X) {
+            xBits ^= 1L << cell;
+        } else {
+            oBits ^= 1L << cell;
+        }
+    }
+}
@@ -0,0 +1,172 @@
+import java.util.Random;
+
+/**
+ * A benchmark of the NeuralNetwork evaluation on a single core, over random
+ * positions: making a move on the accumulators, evaluating and unmaking it,
+ * and batched evaluations of all the moves of a position.
+ * The incremental accumulators and the batched scores are cross-checked
+ * against accumulators rebuilt from scratch.
+ *
+ * @author Matanel Pataki
+ */
+public class NeuralBenchmark {
+
+    /* ************ PRIVATE MEMBERS *********** */
+    private static final int POSITIONS = 4096;
+    private static final int MAX_MARKS = 24;
+    private static final int WARMUP_ROUNDS = 20;
+    private static final int ROUNDS = 50;
+    private static final String RESULT_MSG =
+            "%-28s %8.1f ns/eval %12.0f evals/s";
+    private static final String MISMATCH_ERR =
+            "Mismatch on position %d: %d != %d";
+    private static long sink; // keeps the results alive
+
+    /* ************ MAIN *********** */
+
+    public static void main(String[] args) throws Exception {
+        NeuralNetwork network = args.length > 0 ?
+                NeuralNetwork.load(args[0]) : NeuralNetwork.getDefault();
+        Random random = new Random(0);
+        Board[] boards = new Board[POSITIONS];
+        Mark[] toMove = new Mark[POSITIONS];
+        for (int i = 0; i < POSITIONS; i++) {
+            boards[i] = randomPosition(random);
+            toMove[i] = boards[i].getMarksPlaced() % 2 == 0 ? Mark.X : Mark.O;
+        }
+        crossCheck(network, boards, toMove);
+        NeuralAccumulator accumulator = new NeuralAccumulator(network);
+        int[] scores = new int[NeuralNetwork.CELLS];
+        double incremental = 0;
+        double batched = 0;
+        for (int round = 0; round < WARMUP_ROUNDS + ROUNDS; round++) {
+            long start = System.nanoTime();
+            long evaluations = playIncremental(network, accumulator, boards,
+                    toMove);
+            if (round >= WARMUP_ROUNDS) {
+                incremental += (System.nanoTime() - start) /
+                        (double) evaluations;
+            }
+            start = System.nanoTime();
+            evaluations = scoreAllMoves(network, accumulator, boards, toMove,
+                    scores);
+            if (round >= WARMUP_ROUNDS) {
+                batched += (System.nanoTime() - start) / (double) evaluations;
+            }
+        }
+        report("make, eval and unmake", incremental / ROUNDS);
+        report("batched moves of a position", batched / ROUNDS);
+    }
+
+    /* ************ PRIVATE METHODS *********** */
+
+    /*
+        Plays every open cell of every position on the accumulators, one
+        at a time, evaluating the position after the move and taking the
+        move back - as a search would.
+        Returns the number of evaluations.
+     */
+    private static long playIncremental(NeuralNetwork network,
+                                        NeuralAccumulator accumulator,
+                                        Board[] boards, Mark[] toMove) {
+        long evaluations = 0;
+        long result = 0;
+        for (int i = 0; i < POSITIONS; i++) {
+            accumulator.sync(boards[i]);
+            Mark next = toMove[i] == Mark.X ? Mark.O : Mark.X;
+            long open = ~accumulator.getMarkedCells() & Board.ALL_CELLS;
+            evaluations += Long.bitCount(open);
+            for (; open != 0; open &= open - 1) {
+                int cell = Long.numberOfTrailingZeros(open);
+                accumulator.add(toMove[i], cell);
+                result += network.evaluate(accumulator, next);
+                accumulator.remove(toMove[i], cell);
+            }
+        }
+        sink += result;
+        return evaluations;
+    }
+
+    /*
+        Scores every open cell of every position, as a batch per position.
+        Returns the number of evaluations.
+     */
+    private static long scoreAllMoves(NeuralNetwork network,
+                                      NeuralAccumulator accumulator,
+                                      Board[] boards, Mark[] toMove,
+                                      int[] scores) {
+        long evaluations = 0;
+        long result = 0;
+        for (int i = 0; i < POSITIONS; i++) {
+            accumulator.sync(boards[i]);
+            long open = ~accumulator.getMarkedCells() & Board.ALL_CELLS;
+            network.evaluateMoves(accumulator, toMove[i], open, scores);
+            evaluations += Long.bitCount(open);
+            if (open != 0) {
+                result += scores[Long.numberOfTrailingZeros(open)];
+            }
+        }
+        sink += result;
+        return evaluations;
+    }
+
+    /*
+        Makes sure the incremental accumulators and the batched scores agree
+        with accumulators built from scratch.
+     */
+    private static void crossCheck(NeuralNetwork network, Board[] boards,
+                                   Mark[] toMove) {
+        NeuralAccumulator incremental = new NeuralAccumulator(network);
+        NeuralAccumulator fresh = new NeuralAccumulator(network);
+        int[] scores = new int[NeuralNetwork.CELLS];
+        for (int i = 0; i < POSITIONS; i++) {
+            incremental.sync(boards[i]);
+            fresh.clear();
+            fresh.sync(boards[i]);
+            check(i, network.evaluate(fresh, toMove[i]),
+                    network.evaluate(incremental, toMove[i]));
+            long open = ~fresh.getMarkedCells() & Board.ALL_CELLS;
+            network.evaluateMoves(incremental, toMove[i], open, scores);
+            Mark next = toMove[i] == Mark.X ? Mark.O : Mark.X;
+            for (; open != 0; open &= open - 1) {
+                int cell = Long.numberOfTrailingZeros(open);
+                fresh.add(toMove[i], cell);
+                check(i, -network.evaluate(fresh, next), scores[cell]);
+                fresh.remove(toMove[i], cell);
+            }
+        }
+    }
+
+    /*
+        Throws if the two scores differ.
+     */
+    private static void check(int position, int expected, int actual) {
+        if (expected != actual) {
+            throw new IllegalStateException(String.format(MISMATCH_ERR,
+                    position, expected, actual));
+        }
+    }
+
+    /*
+        Builds a random position of up to MAX_MARKS marks, X and O taking
+        turns.
+     */
+    private static Board randomPosition(Random random) {
+        Board board = new Board();
+        int marks = random.nextInt(MAX_MARKS + 1);
+        while (board.getMarksPlaced() < marks) {
+            Mark mark = board.getMarksPlaced() % 2 == 0 ? Mark.X : Mark.O;
+            board.putMark(mark, random.nextInt(Board.SIZE),
+                    random.nextInt(Board.SIZE));
+        }
+        return board;
+    }
+
+    /*
+        Prints a benchmark result.
+     */
+    private static void report(String name, double nanosPerEval) {
+        System.out.println(String.format(RESULT_MSG, name, nanosPerEval,
+                1e9 / nanosPerEval));
+    }
+}
@@ -0,0 +1,387 @@
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.Arrays;
+
+/**
+ * A small quantized (NNUE style) evaluation network over the board.
+ * Every position is seen from the perspective of both marks, through the
+ * same 2 * SIZE * SIZE input features: the cells of the perspective's own
+ * marks, then the cells of the opponent's marks. The features feed a hidden
+ * layer of int16 accumulators per perspective (see NeuralAccumulator), kept
+ * up to date incrementally as marks are placed. The evaluation concatenates
+ * the accumulators of the mark to move and of its opponent, applies a
+ * squared clipped ReLU (SCReLU) to them, and sums them up with the int16
+ * output weights - all in integer arithmetic and without allocating.
+ * Weights are read from a file (see load and save). Without one, the
+ * handcrafted network is used: a hidden unit per winning window, counting
+ * the perspective's marks in the window, and silenced once the opponent
+ * has a mark in it.
+ * Running main writes the handcrafted network to a file, as a starting
+ * point for trained weights.
+ *
+ * @author Matanel Pataki
+ */
+public final class NeuralNetwork {
+
+    /* ************ PUBLIC MEMBERS *********** */
+    public static final int CELLS = Board.SIZE * Board.SIZE;
+    public static final int FEATURES = 2 * CELLS;
+    public static final int ACTIVATION_LIMIT = 255; // the clip of the ReLU
+
+    /* ************ PRIVATE MEMBERS *********** */
+    private static final String USAGE_ERR =
+            "Usage: java NeuralNetwork [weights file to write]";
+    private static final String FORMAT_ERR = "Bad weights file: %s";
+    private static final String WEIGHTS_PROPERTY = "neural.weights";
+    private static final int MAGIC = 0x4E4E5545; // "NNUE"
+    private static final int VERSION = 1;
+    private static final int MAX_HIDDEN = 1024;
+    // the handcrafted weights:
+    private static final short OWN_MARK_WEIGHT = 64;
+    private static final short OPPONENT_MARK_WEIGHT = -4 * ACTIVATION_LIMIT;
+    private static final short TO_MOVE_WEIGHT = 3; // own windows, to move
+    private static final short WAITING_WEIGHT = -2; // opponent windows
+    private static final int OUTPUT_SHIFT = 10;
+    private final int hidden;
+    private final short[][] inputWeights; // by feature, then hidden unit
+    private final short[] biases;
+    private final short[] outputWeights; // to move units, then waiting units
+    private final int outputBias;
+
+    /**
+     * CONSTRUCTOR -
+     * Initializes the network with the given weights (used as is).
+     *
+     * @param inputWeights  - Weights of the features, by feature then by
+     *                      hidden unit.
+     * @param biases        - Biases of the hidden units.
+     * @param outputWeights - Weights of the hidden units of the mark to move,
+     *                      then of its opponent.
+     * @param outputBias    - Bias of the output.
+     * @throws IllegalArgumentException If the layer sizes do not match, or
+     *                                  an accumulator or the output may
+     *                                  overflow (see checkRanges).
+     */
+    public NeuralNetwork(short[][] inputWeights, short[] biases,
+                         short[] outputWeights, int outputBias) {
+        if (inputWeights.length != FEATURES ||
+                outputWeights.length != 2 * biases.length) {
+            throw new IllegalArgumentException(String.format(FORMAT_ERR,
+                    "layer sizes do not match"));
+        }
+        checkRanges(inputWeights, biases, outputWeights, outputBias);
+        this.hidden = biases.length;
+        this.inputWeights = inputWeights;
+        this.biases = biases;
+        this.outputWeights = outputWeights;
+        this.outputBias = outputBias;
+    }
+
+    /* ************ PUBLIC METHODS *********** */
+
+    /**
+     * @return The network of -Dneural.weights=[file] if given, the
+     * handcrafted network otherwise.
+     */
+    public static NeuralNetwork getDefault() {
+        return DefaultHolder.NETWORK;
+    }
+
+    /**
+     * @return The number of hidden units per perspective.
+     */
+    public int getHiddenSize() {
+        return hidden;
+    }
+
+    /**
+     * Evaluates a position.
+     *
+     * @param accumulator - The accumulators of the position.
+     * @param toMove      - The mark to move.
+     * @return The score of the position, for the mark to move.
+     */
+    public int evaluate(NeuralAccumulator accumulator, Mark toMove) {
+        short[] mover = accumulator.getValues(toMove);
+        short[] waiting = accumulator.getValues(
+                toMove == Mark.X ? Mark.O : Mark.X);
+        long sum = 0;
+        for (int h = 0; h < hidden; h++) {
+            sum += (long) screlu(mover[h]) * outputWeights[h] +
+                    screlu(waiting[h]) * outputWeights[hidden + h];
+        }
+        return (int) (sum >> OUTPUT_SHIFT) + outputBias;
+    }
+
+    /**
+     * Evaluates a batch of positions.
+     *
+     * @param accumulators - The accumulators of the positions.
+     * @param toMove       - The mark to move, in each position.
+     * @param count        - Number of positions to evaluate.
+     * @param scores       - Receives the score of every position, for the
+     *                     mark to move.
+     */
+    public void evaluate(NeuralAccumulator[] accumulators, Mark[] toMove,
+                         int count, int[] scores) {
+        for (int i = 0; i < count; i++) {
+            scores[i] = evaluate(accumulators[i], toMove[i]);
+        }
+    }
+
+    /**
+     * Evaluates, as a batch, the positions after each of the given moves,
+     * without changing the accumulators.
+     *
+     * @param accumulator - The accumulators of the position before the move.
+     * @param mover       - The mark making the move.
+     * @param cells       - The cells to place the mark in, a bit per cell.
+     * @param scores      - Receives, by cell index, the score of the position
+     *                    after the move, for the mover.
+     */
+    public void evaluateMoves(NeuralAccumulator accumulator, Mark mover,
+                              long cells, int[] scores) {
+        short[] own = accumulator.getValues(mover);
+        short[] opponent = accumulator.getValues(
+                mover == Mark.X ? Mark.O : Mark.X);
+        for (; cells != 0; cells &= cells - 1) {
+            int cell = Long.numberOfTrailingZeros(cells);
+            short[] ownDelta = inputWeights[cell];
+            short[] opponentDelta = inputWeights[CELLS + cell];
+            long sum = 0;
+            for (int h = 0; h < hidden; h++) {
+                // after the move the opponent is to move:
+                sum += (long) screlu(opponent[h] + opponentDelta[h]) *
+                        outputWeights[h] +
+                        screlu(own[h] + ownDelta[h]) *
+                                outputWeights[hidden + h];
+            }
+            scores[cell] = -((int) (sum >> OUTPUT_SHIFT) + outputBias);
+        }
+    }
+
+    /**
+     * Reads a network from a weights file.
+     * Format (big endian): magic "NNUE" (int), version (int), features (int),
+     * hidden units (int), input weights by feature then hidden unit, hidden
+     * biases and output weights (int16s), output bias (int).
+     *
+     * @param path - The weights file.
+     * @return The network.
+     * @throws IOException If the file could not be read, is malformed, or
+     *                     its weights may overflow the int16 accumulators
+     *                     or the output.
+     */
+    public static NeuralNetwork load(String path) throws IOException {
+        try (DataInputStream in = new DataInputStream(
+                new BufferedInputStream(new FileInputStream(path)))) {
+            if (in.readInt() != MAGIC || in.readInt() != VERSION ||
+                    in.readInt() != FEATURES) {
+                throw new IOException(String.format(FORMAT_ERR, path));
+            }
+            int hidden = in.readInt();
+            if (hidden <= 0 || hidden > MAX_HIDDEN) {
+                throw new IOException(String.format(FORMAT_ERR, path));
+            }
+            short[][] inputWeights = new short[FEATURES][hidden];
+            for (short[] weights : inputWeights) {
+                readShorts(in, weights);
+            }
+            short[] biases = new short[hidden];
+            readShorts(in, biases);
+            short[] outputWeights = new short[2 * hidden];
+            readShorts(in, outputWeights);
+            try {
+                return new NeuralNetwork(inputWeights, biases, outputWeights,
+                        in.readInt());
+            } catch (IllegalArgumentException e) {
+                throw new IOException(path + ": " + e.getMessage());
+            }
+        }
+    }
+
+    /**
+     * Writes the network to a weights file (see load for the format).
+     *
+     * @param path - The weights file.
+     * @throws IOException If the file could not be written.
+     */
+    public void save(String path) throws IOException {
+        try (DataOutputStream out = new DataOutputStream(
+                new BufferedOutputStream(new FileOutputStream(path)))) {
+            out.writeInt(MAGIC);
+            out.writeInt(VERSION);
+            out.writeInt(FEATURES);
+            out.writeInt(hidden);
+            for (short[] weights : inputWeights) {
+                writeShorts(out, weights);
+            }
+            writeShorts(out, biases);
+            writeShorts(out, outputWeights);
+            out.writeInt(outputBias);
+        }
+    }
+
+    /**
+     * Builds the handcrafted network: a hidden unit per winning window (a
+     * line of WIN_STREAK cells), counting the perspective's marks in it and
+     * silenced by any opponent mark in it. Windows close to completion
+     * weigh the most, through the squared activation.
+     *
+     * @return The handcrafted network.
+     */
+    public static NeuralNetwork handcrafted() {
+        int[][] steps = {{0, 1}, {1, 0}, {1, 1}, {1, -1}};
+        short[][] inputWeights = new short[FEATURES][CELLS * steps.length];
+        int windows = 0;
+        for (int row = 0; row < Board.SIZE; row++) {
+            for (int col = 0; col < Board.SIZE; col++) {
+                for (int[] step : steps) {
+                    int lastRow = row + step[0] * (Board.WIN_STREAK - 1);
+                    int lastCol = col + step[1] * (Board.WIN_STREAK - 1);
+                    if (lastRow >= Board.SIZE || lastCol < 0 ||
+                            lastCol >= Board.SIZE) {
+                        continue;
+                    }
+                    for (int i = 0; i < Board.WIN_STREAK; i++) {
+                        int cell = (row + step[0] * i) * Board.SIZE +
+                                col + step[1] * i;
+                        inputWeights[cell][windows] = OWN_MARK_WEIGHT;
+                        inputWeights[CELLS + cell][windows] =
+                                OPPONENT_MARK_WEIGHT;
+                    }
+                    windows++;
+                }
+            }
+        }
+        short[][] trimmed = new short[FEATURES][];
+        for (int feature = 0; feature < FEATURES; feature++) {
+            trimmed[feature] = Arrays.copyOf(
+                    inputWeights[feature], windows);
+        }
+        short[] outputWeights = new short[2 * windows];
+        for (int h = 0; h < windows; h++) {
+            outputWeights[h] = TO_MOVE_WEIGHT;
+            outputWeights[windows + h] = WAITING_WEIGHT;
+        }
+        return new NeuralNetwork(trimmed, new short[windows], outputWeights,
+                0);
+    }
+
+    /**
+     * @param feature - Index of an input feature.
+     * @return The weights of the feature, by hidden unit (not to be changed).
+     */
+    short[] getInputWeights(int feature) {
+        return inputWeights[feature];
+    }
+
+    /**
+     * @return The biases of the hidden units (not to be changed).
+     */
+    short[] getBiases() {
+        return biases;
+    }
+
+    /* ************ PRIVATE METHODS *********** */
+
+    /*
+        Checks that the integer arithmetic of the network is exact in every
+        position: an accumulator holds its bias plus, per cell, the weight
+        of the perspective's mark, of the opponent's mark or nothing, so
+        its extremes - the bias plus the largest (or smallest) choice of
+        every cell - must fit an int16. The output sums at most
+        ACTIVATION_LIMIT ^ 2 per unit, which must fit an int (negated, for
+        evaluateMoves) once shifted and biased.
+     */
+    private static void checkRanges(short[][] inputWeights, short[] biases,
+                                    short[] outputWeights, int outputBias) {
+        for (int h = 0; h < biases.length; h++) {
+            long highest = biases[h];
+            long lowest = biases[h];
+            for (int cell = 0; cell < CELLS; cell++) {
+                int own = inputWeights[cell][h];
+                int opponent = inputWeights[CELLS + cell][h];
+                highest += Math.max(0, Math.max(own, opponent));
+                lowest += Math.min(0, Math.min(own, opponent));
+            }
+            if (highest > Short.MAX_VALUE || lowest < Short.MIN_VALUE) {
+                throw new IllegalArgumentException(String.format(FORMAT_ERR,
+                        "accumulator " + h + " may overflow int16"));
+            }
+        }
+        long activations = (long) ACTIVATION_LIMIT * ACTIVATION_LIMIT;
+        long output = 0;
+        for (short weight : outputWeights) {
+            output += activations * Math.abs(weight);
+        }
+        if ((output >> OUTPUT_SHIFT) + Math.abs((long) outputBias) >=
+                Integer.MAX_VALUE) {
+            throw new IllegalArgumentException(String.format(FORMAT_ERR,
+                    "the output may overflow int"));
+        }
+    }
+
+    /*
+        The squared clipped ReLU of an accumulator value.
+     */
+    private static int screlu(int value) {
+        int clipped = Math.min(Math.max(value, 0), ACTIVATION_LIMIT);
+        return clipped * clipped;
+    }
+
+    /*
+        Reads an array of int16s.
+     */
+    private static void readShorts(DataInputStream in, short[] values)
+            throws IOException {
+        for (int i = 0; i < values.length; i++) {
+            values[i] = in.readShort();
+        }
+    }
+
+    /*
+        Writes an array of int16s.
+     */
+    private static void writeShorts(DataOutputStream out, short[] values)
+            throws IOException {
+        for (short value : values) {
+            out.writeShort(value);
+        }
+    }
+
+    /*
+        Loads the default network once, on first use.
+     */
+    private static final class DefaultHolder {
+        private static final NeuralNetwork NETWORK = loadDefault();
+
+        private static NeuralNetwork loadDefault() {
+            String path = System.getProperty(WEIGHTS_PROPERTY);
+            if (path == null) {
+                return handcrafted();
+            }
+            try {
+                return load(path);
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
+    }
+
+    /* ************ MAIN *********** */
+
+    public static void main(String[] args) throws IOException {
+        if (args.length != 1) {
+            System.err.println(USAGE_ERR);
+            return;
+        }
+        handcrafted().save(args[0]);
+    }
+}
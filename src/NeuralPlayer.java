@@ -0,0 +1,111 @@
+import java.util.Random;
+
+/**
+ * Represents a Player guided by a learned evaluation (see NeuralNetwork).
+ * This player wins at once whenever it can, and blocks the opponent's
+ * immediate win otherwise. Else it scores every open cell with the network,
+ * as a single batch, and places its mark in the best one (breaking ties at
+ * random).
+ * The network's accumulators follow the board incrementally - only the
+ * marks placed since the player's previous turn are fed into them.
+ *
+ * @author Matanel Pataki
+ */
+public class NeuralPlayer implements Player {
+
+    /* ************ PRIVATE MEMBERS *********** */
+    private final Random random = new Random();
+    private final NeuralNetwork network;
+    private final NeuralAccumulator accumulator;
+    private final int[] scores = new int[NeuralNetwork.CELLS];
+
+    /**
+     * CONSTRUCTOR -
+     * Initializes a player guided by the default network.
+     */
+    public NeuralPlayer() {
+        this(NeuralNetwork.getDefault());
+    }
+
+    /**
+     * CONSTRUCTOR -
+     * Initializes a player whose choices are reproducible from the seed.
+     *
+     * @param seed - The seed of the player's random choices.
+     */
+    public NeuralPlayer(long seed) {
+        this(NeuralNetwork.getDefault());
+        random.setSeed(seed);
+    }
+
+    /**
+     * CONSTRUCTOR -
+     * Initializes a player guided by the given network.
+     *
+     * @param network - The network to evaluate positions with.
+     */
+    public NeuralPlayer(NeuralNetwork network) {
+        this.network = network;
+        this.accumulator = new NeuralAccumulator(network);
+    }
+
+    /* ************ PUBLIC METHODS *********** */
+
+    /**
+     * Given a board and a mark, this function places the mark in the cell
+     * the network scores the best.
+     *
+     * @param board - The board to place the mark in.
+     * @param mark  - The type of mark to be placed.
+     */
+    @Override
+    public void playTurn(Board board, Mark mark) {
+        accumulator.sync(board);
+        long cells = board.getWinningCells(mark);
+        if (cells == 0) {
+            cells = board.getWinningCells(mark == Mark.X ? Mark.O : Mark.X);
+        }
+        if (cells == 0) {
+            cells = ~accumulator.getMarkedCells() & Board.ALL_CELLS;
+        }
+        if (cells == 0) {
+            return;
+        }
+        int cell = Long.bitCount(cells) == 1 ?
+                Long.numberOfTrailingZeros(cells) : bestCell(mark, cells);
+        if (board.putMark(mark, cell / Board.SIZE, cell % Board.SIZE)) {
+            accumulator.add(mark, cell);
+        }
+    }
+
+    /**
+     * Drops the position of the previous game.
+     */
+    @Override
+    public void newGame() {
+        accumulator.clear();
+    }
+
+    /* ************ PRIVATE METHODS *********** */
+
+    /*
+        Scores the given cells with the network, and returns the best one
+        (a random one of the best, if several score the same).
+     */
+    private int bestCell(Mark mark, long cells) {
+        network.evaluateMoves(accumulator, mark, cells, scores);
+        int best = Board.NO_CELL;
+        int ties = 0;
+        for (; cells != 0; cells &= cells - 1) {
+            int cell = Long.numberOfTrailingZeros(cells);
+            if (best == Board.NO_CELL || scores[cell] > scores[best]) {
+                best = cell;
+                ties = 1;
+            } else if (scores[cell] == scores[best] &&
+                    random.nextInt(++ties) == 0) {
+                best = cell;
+            }
+        }
+        return best;
+    }
+}
@@ -0,0 +1,318 @@
+import java.io.IOException;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * A transposition table (a cache of search results by position key) held
+ * off the Java heap, so even a table of a gigabyte adds nothing for the
+ * garbage collector to trace, and shared without locks between all the
+ * threads (and games) searching with it.
+ * The memory is a direct buffer, or a memory-mapped file, in which case the
+ * table persists across runs (and processes mapping the same file share
+ * it). A file starts with a header of a bucket - magic, format version,
+ * the board's SIZE and WIN_STREAK and the key scheme of the caller - and a
+ * file whose header (or size) does not match is cleared, so a table is
+ * never read with keys or data of another layout.
+ * The memory is split into buckets of 4 entries, 64 bytes - a cache line,
+ * so a lookup touches a single line. Every entry is two longs - the key xor-ed
+ * with the data, then the data - so a torn entry (written by two threads at
+ * once) fails verification and reads as a miss instead of as a wrong value.
+ * The top byte of the data (see PRIORITY_SHIFT) is the entry's priority: a
+ * full bucket replaces its entry of the lowest priority (e.g. the one that
+ * took the least work to compute).
+ * The table counts its probes, hits and the stores that evicted another
+ * position (collisions), and estimates how full it is.
+ *
+ * @author Matanel Pataki
+ */
+public final class OffHeapTable {
+
+    /* ************ PUBLIC MEMBERS *********** */
+    public static final int PRIORITY_SHIFT = 56; // data bits of the priority
+    public static final long MISS = 0; // the data of a missing entry
+
+    /* ************ PRIVATE MEMBERS *********** */
+    private static final VarHandle LONGS =
+            MethodHandles.byteBufferViewVarHandle(long[].class,
+                    ByteOrder.nativeOrder());
+    private static final int ENTRY_BYTES = 16;
+    private static final int BUCKET_ENTRIES = 4;
+    private static final int BUCKET_BYTES = ENTRY_BYTES * BUCKET_ENTRIES;
+    private static final int MAX_MEGABYTES = 1024; // a buffer's limit
+    private static final int BYTES_IN_MEGABYTE = 1 << 20;
+    private static final int SAMPLE_BUCKETS = 1024; // to estimate fullness
+    private static final String STATS_MSG = "%d MB, %.1f%% full, %d probes," +
+            " %.1f%% hits, %d stores, %d collisions";
+    private static final String SIZE_ERR = "Bad table size: %d MB";
+    private static final int MAGIC = 0x4F485442; // "OHTB"
+    private static final int VERSION = 1; // of the layout of the file
+    private static final int HEADER_BYTES = BUCKET_BYTES; // keeps alignment
+    private final ByteBuffer memory;
+    private final int bucketBits;
+    private final int bucketMask;
+    private final LongAdder probes = new LongAdder();
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder stores = new LongAdder();
+    private final LongAdder collisions = new LongAdder();
+
+    /**
+     * CONSTRUCTOR -
+     * Initializes an empty table in a direct buffer.
+     *
+     * @param megabytes - Size of the table, rounded down to a power of 2 (at
+     *                  most 1024).
+     */
+    public OffHeapTable(int megabytes) {
+        this(allocate(bytesOf(megabytes)), bytesOf(megabytes));
+    }
+
+    /*
+        Initializes a table in the given memory.
+     */
+    private OffHeapTable(ByteBuffer memory, int bytes) {
+        this.memory = memory;
+        this.bucketBits = Integer.numberOfTrailingZeros(bytes / BUCKET_BYTES);
+        this.bucketMask = (1 << bucketBits) - 1;
+    }
+
+    /* ************ PUBLIC METHODS *********** */
+
+    /**
+     * Maps a table to a file, creating the file (as an empty table) if
+     * needed, so its entries persist across runs.
+     *
+     * @param path      - The file of the table.
+     * @param megabytes - Size of the table, rounded down to a power of 2 (at
+     *                  most 1024); a file of another size is cleared.
+     * @param scheme    - Identifies the caller's keys and data (e.g.
+     *                  ProofTable.FORMAT); a file of another scheme, board
+     *                  or version is cleared.
+     * @return The table.
+     * @throws IOException If the file could not be mapped.
+     */
+    public static OffHeapTable map(String path, int megabytes, int scheme)
+            throws IOException {
+        int bytes = bytesOf(megabytes);
+        try (FileChannel channel = FileChannel.open(Paths.get(path),
+                StandardOpenOption.CREATE, StandardOpenOption.READ,
+                StandardOpenOption.WRITE)) {
+            ByteBuffer header = ByteBuffer.allocate(HEADER_BYTES)
+                    .putInt(MAGIC).putInt(VERSION).putInt(Board.SIZE)
+                    .putInt(Board.WIN_STREAK).putInt(scheme).clear();
+            ByteBuffer found = ByteBuffer.allocate(HEADER_BYTES);
+            channel.read(found, 0);
+            if (channel.size() != HEADER_BYTES + bytes ||
+                    !found.flip().equals(header)) {
+                channel.truncate(0); // the entries are re-mapped as zeros
+                channel.write(header, 0);
+            }
+            MappedByteBuffer memory = channel.map(
+                    FileChannel.MapMode.READ_WRITE, HEADER_BYTES, bytes);
+            return new OffHeapTable(memory, bytes);
+        }
+    }
+
+    /**
+     * Creates a table of the given number of entries.
+     *
+     * @param entryBits - log2 of the number of entries (of 16 bytes each).
+     * @return An empty table in a direct buffer.
+     */
+    public static OffHeapTable withEntries(int entryBits) {
+        int bytes = bytesOfEntries(entryBits);
+        return new OffHeapTable(allocate(bytes), bytes);
+    }
+
+    /**
+     * Looks a position up.
+     *
+     * @param key - The key of the position.
+     * @return The data stored for the position, MISS if it is not in the
+     * table.
+     */
+    public long probe(long key) {
+        probes.increment();
+        int base = bucketOf(key);
+        for (int i = base; i < base + BUCKET_BYTES; i += ENTRY_BYTES) {
+            long data = (long) LONGS.getOpaque(memory, i + Long.BYTES);
+            if (data != MISS &&
+                    ((long) LONGS.getOpaque(memory, i) ^ data) == key) {
+                hits.increment();
+                return data;
+            }
+        }
+        return MISS;
+    }
+
+    /**
+     * Stores the data of a position, replacing its previous data if it is
+     * in the table, else an empty entry of its bucket, else the entry of
+     * the lowest priority.
+     *
+     * @param key  - The key of the position.
+     * @param data - The data (not MISS), its top byte being its priority.
+     */
+    public void store(long key, long data) {
+        stores.increment();
+        int base = bucketOf(key);
+        int victim = base;
+        long victimPriority = Long.MAX_VALUE;
+        boolean evicts = true;
+        for (int i = base; i < base + BUCKET_BYTES; i += ENTRY_BYTES) {
+            long old = (long) LONGS.getOpaque(memory, i + Long.BYTES);
+            if (old == MISS ||
+                    ((long) LONGS.getOpaque(memory, i) ^ old) == key) {
+                victim = i;
+                evicts = false;
+                break;
+            }
+            long priority = old >>> PRIORITY_SHIFT;
+            if (priority < victimPriority) {
+                victim = i;
+                victimPriority = priority;
+            }
+        }
+        if (evicts) {
+            collisions.increment();
+        }
+        LONGS.setOpaque(memory, victim + Long.BYTES, data);
+        LONGS.setOpaque(memory, victim, key ^ data);
+    }
+
+    /**
+     * @return The number of entries of the table.
+     */
+    public int capacity() {
+        return BUCKET_ENTRIES << bucketBits;
+    }
+
+    /**
+     * Reads an entry by its index, e.g. to save the table.
+     *
+     * @param entry - The index of the entry, below capacity().
+     * @return The data of the entry, MISS if it is empty.
+     */
+    public long dataAt(int entry) {
+        return (long) LONGS.getOpaque(memory,
+                entry * ENTRY_BYTES + Long.BYTES);
+    }
+
+    /**
+     * Reads the key of an entry by its index.
+     *
+     * @param entry - The index of the entry, below capacity().
+     * @param data  - The data of the entry, as read by dataAt.
+     * @return The key of the entry.
+     */
+    public long keyAt(int entry, long data) {
+        return (long) LONGS.getOpaque(memory, entry * ENTRY_BYTES) ^ data;
+    }
+
+    /**
+     * Empties the table (its statistics are kept).
+     */
+    public void clear() {
+        for (int i = 0; i < memory.capacity(); i += Long.BYTES) {
+            LONGS.setOpaque(memory, i, 0L);
+        }
+    }
+
+    /**
+     * Writes the entries of a memory-mapped table to its file (it does
+     * nothing for a table in a direct buffer), e.g. before the process
+     * exits.
+     */
+    public void flush() {
+        if (memory instanceof MappedByteBuffer) {
+            ((MappedByteBuffer) memory).force();
+        }
+    }
+
+    /**
+     * @return The fraction of the entries in use, estimated from the first
+     * buckets.
+     */
+    public double fullness() {
+        int buckets = Math.min(SAMPLE_BUCKETS, 1 << bucketBits);
+        int used = 0;
+        for (int entry = 0; entry < buckets * BUCKET_ENTRIES; entry++) {
+            if (dataAt(entry) != MISS) {
+                used++;
+            }
+        }
+        return used / (double) (buckets * BUCKET_ENTRIES);
+    }
+
+    /**
+     * @return The fraction of the probes that found their position.
+     */
+    public double hitRate() {
+        long total = probes.sum();
+        return total == 0 ? 0 : hits.sum() / (double) total;
+    }
+
+    /**
+     * @return The number of stores that evicted another position.
+     */
+    public long getCollisions() {
+        return collisions.sum();
+    }
+
+    /**
+     * @return A line of the table's statistics.
+     */
+    @Override
+    public String toString() {
+        return String.format(STATS_MSG,
+                memory.capacity() / BYTES_IN_MEGABYTE, 100 * fullness(),
+                probes.sum(), 100 * hitRate(), stores.sum(), getCollisions());
+    }
+
+    /* ************ PRIVATE METHODS *********** */
+
+    /*
+        Returns the offset of the key's bucket.
+     */
+    private int bucketOf(long key) {
+        int bucket = (int) (key >>> (Long.SIZE - bucketBits)) & bucketMask;
+        return bucket * BUCKET_BYTES;
+    }
+
+    /*
+        Allocates a direct buffer of the given size, aligned to a bucket
+        (a cache line).
+     */
+    private static ByteBuffer allocate(int bytes) {
+        return ByteBuffer.allocateDirect(bytes + BUCKET_BYTES)
+                .alignedSlice(BUCKET_BYTES).limit(bytes).slice();
+    }
+
+    /*
+        Returns the size in bytes of a table of the given size in megabytes.
+     */
+    private static int bytesOf(int megabytes) {
+        if (megabytes < 1 || megabytes > MAX_MEGABYTES) {
+            throw new IllegalArgumentException(String.format(SIZE_ERR,
+                    megabytes));
+        }
+        return Integer.highestOneBit(megabytes) * BYTES_IN_MEGABYTE;
+    }
+
+    /*
+        Returns the size in bytes of a table of 2^entryBits entries.
+     */
+    private static int bytesOfEntries(int entryBits) {
+        if (entryBits < 2 || entryBits > 26) {
+            throw new IllegalArgumentException("Bad table size: 2^" +
+                    entryBits);
+        }
+        return ENTRY_BYTES << entryBits;
+    }
+}
@@ -0,0 +1,211 @@
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * A typed, named set of strategy parameters (e.g. the weights of a player),
+ * which a tuner (see SpsaTuner) may perturb and adjust.
+ * Every parameter is defined once with its default value, its bounds, its
+ * type (real or integer) and the size of its perturbation step; a value set
+ * later is clamped to the bounds (and rounded, for an integer parameter).
+ * Parameters keep the order they were defined in.
+ *
+ * @author Matanel Pataki
+ */
+public final class ParameterSet {
+
+    /* ************ PRIVATE MEMBERS *********** */
+    private static final String UNKNOWN_ERR = "Unknown parameter: ";
+    private static final String DUPLICATE_ERR = "Parameter defined twice: ";
+    private static final String FORMAT_ERR = "Bad parameter entry: ";
+    private static final String ENTRY_SEPARATOR = ",";
+    private static final String VALUE_SEPARATOR = "=";
+    private final Map<String, Parameter> parameters = new LinkedHashMap<>();
+
+    /*
+        A single parameter: its definition and its current value.
+     */
+    private static final class Parameter {
+        final double min;
+        final double max;
+        final double step;
+        final boolean integer;
+        double value;
+
+        Parameter(double min, double max, double step, boolean integer) {
+            this.min = min;
+            this.max = max;
+            this.step = step;
+            this.integer = integer;
+        }
+
+        void set(double value) {
+            value = Math.max(min, Math.min(max, value));
+            this.value = integer ? Math.rint(value) : value;
+        }
+    }
+
+    /* ************ PUBLIC METHODS *********** */
+
+    /**
+     * Defines a real parameter.
+     *
+     * @param name  - The name of the parameter.
+     * @param value - Its default value.
+     * @param min   - Its lowest value.
+     * @param max   - Its highest value.
+     * @param step  - The size of a perturbation of the parameter.
+     * @return This set, so definitions may be chained.
+     */
+    public ParameterSet defineReal(String name, double value, double min,
+                                   double max, double step) {
+        return define(name, new Parameter(min, max, step, false), value);
+    }
+
+    /**
+     * Defines an integer parameter.
+     *
+     * @param name  - The name of the parameter.
+     * @param value - Its default value.
+     * @param min   - Its lowest value.
+     * @param max   - Its highest value.
+     * @param step  - The size of a perturbation of the parameter.
+     * @return This set, so definitions may be chained.
+     */
+    public ParameterSet defineInt(String name, int value, int min, int max,
+                                  double step) {
+        return define(name, new Parameter(min, max, step, true), value);
+    }
+
+    /**
+     * @return The names of the parameters, in the order they were defined.
+     */
+    public List<String> names() {
+        return Collections.unmodifiableList(
+                new ArrayList<>(parameters.keySet()));
+    }
+
+    /**
+     * @return The number of parameters.
+     */
+    public int size() {
+        return parameters.size();
+    }
+
+    /**
+     * @param name - The name of a parameter.
+     * @return Its current value.
+     */
+    public double get(String name) {
+        return parameter(name).value;
+    }
+
+    /**
+     * @param name - The name of an integer parameter.
+     * @return Its current value.
+     */
+    public int getInt(String name) {
+        return (int) parameter(name).value;
+    }
+
+    /**
+     * @param name - The name of a parameter.
+     * @return The size of a perturbation of the parameter.
+     */
+    public double getStep(String name) {
+        return parameter(name).step;
+    }
+
+    /**
+     * Sets the value of a parameter, clamped to its bounds (and rounded if
+     * the parameter is an integer).
+     *
+     * @param name  - The name of the parameter.
+     * @param value - The new value.
+     */
+    public void set(String name, double value) {
+        parameter(name).set(value);
+    }
+
+    /**
+     * @return A copy of the set, with the same definitions and values.
+     */
+    public ParameterSet copy() {
+        ParameterSet copy = new ParameterSet();
+        for (Map.Entry<String, Parameter> entry : parameters.entrySet()) {
+            Parameter parameter = entry.getValue();
+            copy.define(entry.getKey(), new Parameter(parameter.min,
+                    parameter.max, parameter.step, parameter.integer),
+                    parameter.value);
+        }
+        return copy;
+    }
+
+    /**
+     * Sets the values of the parameters named in the given text, as written
+     * by toString ("name=value,name=value").
+     *
+     * @param text - The values to set.
+     * @throws IllegalArgumentException If the text names an unknown
+     *                                  parameter, or is malformed.
+     */
+    public void parse(String text) {
+        for (String entry : text.split(ENTRY_SEPARATOR)) {
+            String[] fields = entry.trim().split(VALUE_SEPARATOR);
+            if (fields.length != 2) {
+                throw new IllegalArgumentException(FORMAT_ERR + entry);
+            }
+            try {
+                set(fields[0], Double.parseDouble(fields[1]));
+            } catch (NumberFormatException e) {
+                throw new IllegalArgumentException(FORMAT_ERR + entry);
+            }
+        }
+    }
+
+    /**
+     * @return The values of the parameters, as "name=value,name=value".
+     */
+    @Override
+    public String toString() {
+        StringBuilder text = new StringBuilder();
+        for (Map.Entry<String, Parameter> entry : parameters.entrySet()) {
+            if (text.length() > 0) {
+                text.append(ENTRY_SEPARATOR);
+            }
+            Parameter parameter = entry.getValue();
+            text.append(entry.getKey()).append(VALUE_SEPARATOR).append(
+                    parameter.integer ? Long.toString((long) parameter.value)
+                            : Double.toString(parameter.value));
+        }
+        return text.toString();
+    }
+
+    /* ************ PRIVATE METHODS *********** */
+
+    /*
+        Adds a parameter to the set, with the given value.
+     */
+    private ParameterSet define(String name, Parameter parameter,
+                                double value) {
+        if (parameters.containsKey(name)) {
+            throw new IllegalArgumentException(DUPLICATE_ERR + name);
+        }
+        parameter.set(value);
+        parameters.put(name, parameter);
+        return this;
+    }
+
+    /*
+        Returns the parameter of the given name.
+     */
+    private Parameter parameter(String name) {
+        Parameter parameter = parameters.get(name);
+        if (parameter == null) {
+            throw new IllegalArgumentException(UNKNOWN_ERR + name);
+        }
+        return parameter;
+    }
+}
@@ -6,4 +6,12 @@
 public interface Player {
 
     void playTurn(Board board, Mark mark);
+
+    /**
+     * Called by the game before the first turn of every game the player
+     * takes part in, so a player reused between games (e.g. in a tournament)
+     * may drop any state left over from its previous game.
+     */
+    default void newGame() {
+    }
 }
\ No newline at end of file
@@ -10,6 +10,8 @@ public class PlayerFactory {
     public static final String WHATEVER = "whatever";
     public static final String CLEVER = "clever";
     public static final String SNARTYPAMTS = "snartypamts";
+    public static final String NEURAL = "neural";
+    public static final String SOLVER = "solver";
 
     /**
      * @param playerType - a String representing the type of player to build.
@@ -25,6 +27,36 @@ public class PlayerFactory {
                 return new CleverPlayer();
             case SNARTYPAMTS:
                 return new SnartypamtsPlayer();
+            case NEURAL:
+                return new NeuralPlayer();
+            case SOLVER:
+                return new SolverPlayer();
+        }
+        return null;
+    }
+
+    /**
+     * Builds a player whose random choices are reproducible from the seed,
+     * so a range of games may be replayed exactly (e.g. by another process).
+     *
+     * @param playerType - a String representing the type of player to build.
+     * @param seed       - The seed of the player's random choices.
+     * @return A new player typed object accordingly, null if bad input.
+     */
+    public Player buildPlayer(String playerType, long seed) {
+        switch (playerType) {
+            case HUMAN:
+                return new HumanPlayer();
+            case WHATEVER:
+                return new WhateverPlayer(seed);
+            case CLEVER:
+                return new CleverPlayer(seed);
+            case SNARTYPAMTS:
+                return new SnartypamtsPlayer(seed);
+            case NEURAL:
+                return new NeuralPlayer(seed);
+            case SOLVER:
+                return new SolverPlayer(seed);
         }
         return null;
     }
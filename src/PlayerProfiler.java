@@ -0,0 +1,190 @@
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Accounts the resources every type of player uses while playing its turns:
+ * the number of moves, the wall clock time, the CPU time of the thread
+ * playing the turn and the bytes it allocated (both from the ThreadMXBean).
+ * The searches a turn hands to the SearchScheduler are accounted as well:
+ * each adds the CPU time and the bytes of the worker running it to the
+ * account of the player whose turn submitted it, whenever it runs (e.g. a
+ * ponder, during the opponent's turn). Work on threads of the player's own
+ * is not accounted.
+ * Profiling is off by default, and costs nothing then; running with
+ * -Dtournament.profile=true turns it on for all the games of the process,
+ * and the tournament prints a summary next to its winnings.
+ * The accounts may be updated by games played in parallel.
+ *
+ * @author Matanel Pataki
+ */
+public final class PlayerProfiler {
+
+    /* ************ PRIVATE MEMBERS *********** */
+    private static final String PROFILE_PROPERTY = "tournament.profile";
+    private static final PlayerProfiler DEFAULT =
+            Boolean.getBoolean(PROFILE_PROPERTY) ? new PlayerProfiler() : null;
+    private static final String HEADER_MSG = String.format(
+            "%-20s %8s %12s %12s %12s %14s", "player", "moves", "wall ms",
+            "cpu ms", "cpu us/move", "bytes/move");
+    private static final String ROW_MSG =
+            "%-20s %8d %12.1f %12.1f %12.1f %14d";
+    private static final int UNSUPPORTED = -1;
+    private final ThreadMXBean threads = ManagementFactory.getThreadMXBean();
+    private final com.sun.management.ThreadMXBean allocations;
+    private final Map<String, Account> accounts = new ConcurrentHashMap<>();
+    // the account of the turn played on the thread, null if none:
+    private static final ThreadLocal<Account> CURRENT = new ThreadLocal<>();
+
+    /**
+     * The resources used by a single type of player.
+     */
+    public static final class Account {
+        private final LongAdder moves = new LongAdder();
+        private final LongAdder wallNanos = new LongAdder();
+        private final LongAdder cpuNanos = new LongAdder();
+        private final LongAdder allocatedBytes = new LongAdder();
+
+        /**
+         * Adds work done for the player on another thread (e.g. a search
+         * on a worker of the SearchScheduler).
+         *
+         * @param cpuNanos       - The CPU time of the work.
+         * @param allocatedBytes - The bytes allocated by the work.
+         */
+        public void addOffloaded(long cpuNanos, long allocatedBytes) {
+            this.cpuNanos.add(cpuNanos);
+            this.allocatedBytes.add(allocatedBytes);
+        }
+    }
+
+    /**
+     * CONSTRUCTOR -
+     * Initializes a profiler with empty accounts, measuring the CPU time
+     * and the allocations of threads if the JVM supports it.
+     */
+    public PlayerProfiler() {
+        if (threads.isThreadCpuTimeSupported()) {
+            threads.setThreadCpuTimeEnabled(true);
+        }
+        com.sun.management.ThreadMXBean allocations = null;
+        if (threads instanceof com.sun.management.ThreadMXBean) {
+            allocations = (com.sun.management.ThreadMXBean) threads;
+            if (allocations.isThreadAllocatedMemorySupported()) {
+                allocations.setThreadAllocatedMemoryEnabled(true);
+            } else {
+                allocations = null;
+            }
+        }
+        this.allocations = allocations;
+    }
+
+    /* ************ PUBLIC METHODS *********** */
+
+    /**
+     * @return The profiler of all the games of the process, null if
+     * profiling is off (see -Dtournament.profile).
+     */
+    public static PlayerProfiler getDefault() {
+        return DEFAULT;
+    }
+
+    /**
+     * @param player - A player.
+     * @return The account of the player's type.
+     */
+    public Account accountOf(Player player) {
+        return accounts.computeIfAbsent(typeOf(player),
+                type -> new Account());
+    }
+
+    /**
+     * @return The account of the turn played on the current thread (or of
+     * the turn a search running on it was submitted by), null if none.
+     */
+    public static Account current() {
+        return CURRENT.get();
+    }
+
+    /**
+     * Sets the account of the turn played on the current thread.
+     *
+     * @param account - The account, null once the turn is over.
+     */
+    public static void setCurrent(Account account) {
+        CURRENT.set(account);
+    }
+
+    /**
+     * @return The CPU time used so far by the current thread in
+     * nanoseconds, -1 if unsupported.
+     */
+    public long threadCpuNanos() {
+        return threads.isThreadCpuTimeSupported() ?
+                threads.getCurrentThreadCpuTime() : UNSUPPORTED;
+    }
+
+    /**
+     * @return The bytes allocated so far by the current thread, -1 if
+     * unsupported.
+     */
+    public long threadAllocatedBytes() {
+        return allocations != null ? allocations.getThreadAllocatedBytes(
+                Thread.currentThread().getId()) : UNSUPPORTED;
+    }
+
+    /**
+     * Adds a turn to the account of the player's type.
+     *
+     * @param account        - The account of the player who played the turn.
+     * @param wallNanos      - The wall clock time of the turn.
+     * @param cpuNanos       - The CPU time of the turn.
+     * @param allocatedBytes - The bytes allocated during the turn.
+     */
+    public void record(Account account, long wallNanos, long cpuNanos,
+                       long allocatedBytes) {
+        account.moves.increment();
+        account.wallNanos.add(wallNanos);
+        account.cpuNanos.add(cpuNanos);
+        account.allocatedBytes.add(allocatedBytes);
+    }
+
+    /**
+     * Prints the accounts of all the player types, a line per type, and
+     * commits them as PlayerUsage events if a flight recording is on.
+     */
+    public void printSummary() {
+        System.out.println(HEADER_MSG);
+        for (Map.Entry<String, Account> entry :
+                new TreeMap<>(accounts).entrySet()) {
+            Account account = entry.getValue();
+            long moves = Math.max(1, account.moves.sum());
+            long cpuNanos = account.cpuNanos.sum();
+            long allocatedBytes = account.allocatedBytes.sum();
+            System.out.println(String.format(ROW_MSG, entry.getKey(),
+                    account.moves.sum(), account.wallNanos.sum() / 1e6,
+                    cpuNanos / 1e6, cpuNanos / 1e3 / moves,
+                    allocatedBytes / moves));
+            GameEvents.PlayerUsage event = new GameEvents.PlayerUsage();
+            if (event.shouldCommit()) {
+                event.player = entry.getKey();
+                event.moves = account.moves.sum();
+                event.cpuNanos = cpuNanos;
+                event.allocatedBytes = allocatedBytes;
+                event.commit();
+            }
+        }
+    }
+
+    /**
+     * @param player - A player.
+     * @return The name of the player's type, as reported in the accounts
+     * and in the flight recorder events.
+     */
+    public static String typeOf(Player player) {
+        return player.getClass().getSimpleName();
+    }
+}
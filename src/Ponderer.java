@@ -0,0 +1,241 @@
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.ToIntFunction;
+
+/**
+ * Lets a searching player keep thinking during its opponent's turn
+ * (pondering), instead of idling until its next playTurn.
+ * Once the player has moved, it starts pondering: a predictor plays the
+ * opponent's most likely reply on a copy of the board, and the player's
+ * search runs on the position after it, in the background. When the real
+ * reply arrives (on the player's next turn) the pondering is stopped: if the
+ * opponent played the predicted reply (a ponder hit), the search goes on
+ * as the search of the player's move - until it ends or the player's own
+ * Deadline expires - and its result is played (a search storing its work in
+ * a table, e.g. the ProofSolver, also resumes from it if it did not find
+ * a move); otherwise (a ponder miss) the search is cancelled through its
+ * Deadline, which it polls, and its result is dropped.
+ * Pondering runs in the background of the default SearchScheduler (see
+ * submitBackground), queued after every search of a move being played, and
+ * a move searched while the workers ponder runs on its own thread (see
+ * SearchScheduler.invoke) - pondering never holds a move up. Its Deadline
+ * is the time the opponent has to reply (the move time of the player, as
+ * both play on the same clocks), so it never runs past the opponent's turn
+ * in a timed game. An opponent whose last reply came too soon to ponder on
+ * it (within MIN_REPLY_NANOS) is not pondered on, so pondering costs
+ * nothing against opponents replying at once.
+ * It is off unless running with -Dsearch.ponder=true, as it takes the CPU
+ * time the opponent may be thinking with.
+ * The ponderers of the process count their hits and misses (of the ponders
+ * stopped by a reply, rather than by the end of the game), the time they
+ * pondered and the time moves took after a hit and after a miss.
+ *
+ * @author Matanel Pataki
+ */
+public final class Ponderer {
+
+    /* ************ PRIVATE MEMBERS *********** */
+    private static final String PONDER_PROPERTY = "search.ponder";
+    private static final boolean ENABLED =
+            Boolean.getBoolean(PONDER_PROPERTY);
+    private static final String STATS_MSG = "%d ponders, %.1f%% hits," +
+            " %.2f ms pondered on average, %.2f ms reused per hit;" +
+            " moves took %.2f ms after a hit, %.2f ms after a miss";
+    private static final double NANOS_IN_MILLI = 1e6;
+    private static final long MIN_REPLY_NANOS = 1_000_000;
+    private static final int NONE = 0;
+    private static final int HIT = 1;
+    private static final int MISS = 2;
+    // statistics of all the ponderers:
+    private static final LongAdder PONDERS = new LongAdder();
+    private static final LongAdder HITS = new LongAdder();
+    private static final LongAdder MISSES = new LongAdder();
+    private static final LongAdder PONDER_NANOS = new LongAdder();
+    private static final LongAdder REUSED_NANOS = new LongAdder();
+    private static final LongAdder[] MOVES = {null, new LongAdder(),
+            new LongAdder()}; // by outcome
+    private static final LongAdder[] MOVE_NANOS = {null, new LongAdder(),
+            new LongAdder()}; // by outcome
+    private Future<Pondered> pending;
+    private Pondered pondered; // the result of the pending search
+    private Deadline deadline; // stops or extends the pending search
+    private AtomicBoolean claimed; // by the search, or by stop if not run
+    private int outcome = NONE; // of the move being played
+    private long moveStart;
+    private long replyStart; // of the opponent's reply being awaited
+    private long lastReplyNanos = Long.MAX_VALUE; // unknown before any
+
+    /*
+        The result of a pondering search: the position pondered on (null if
+        none, published before it is searched), the cell found and the time
+        it took.
+     */
+    private static final class Pondered {
+        volatile BoardSnapshot expected;
+        int cell = Board.NO_CELL;
+        long nanos;
+    }
+
+    /* ************ PUBLIC METHODS *********** */
+
+    /**
+     * @return True if pondering is on (-Dsearch.ponder=true), False
+     * otherwise.
+     */
+    public static boolean isEnabled() {
+        return ENABLED;
+    }
+
+    /**
+     * Starts pondering, after the player's move, on the reply the predictor
+     * plays. Ends the accounting of the move just played.
+     *
+     * @param position      - The board after the player's move (it is
+     *                      copied).
+     * @param opponent      - The mark of the opponent.
+     * @param opponentNanos - The time the opponent has to reply,
+     *                      Long.MAX_VALUE if the game is not timed.
+     * @param predictor     - Plays the predicted reply of the opponent.
+     * @param search        - Searches the position after the reply,
+     *                      returning the cell of the player's move,
+     *                      Board.NO_CELL if none was found.
+     */
+    public void start(Board position, Mark opponent, long opponentNanos,
+                      Player predictor, ToIntFunction<Board> search) {
+        if (outcome != NONE) {
+            MOVES[outcome].increment();
+            MOVE_NANOS[outcome].add(System.nanoTime() - moveStart);
+            outcome = NONE;
+        }
+        discard();
+        replyStart = System.nanoTime();
+        if (position.gameEnded() || lastReplyNanos < MIN_REPLY_NANOS) {
+            return;
+        }
+        Board board = new Board(position);
+        Deadline stopped = deadline = new Deadline(opponentNanos);
+        AtomicBoolean claim = claimed = new AtomicBoolean();
+        Pondered result = pondered = new Pondered();
+        pending = SearchScheduler.getDefault().submitBackground(stopped,
+                () -> {
+                    if (!claim.compareAndSet(false, true)) {
+                        return result;
+                    }
+                    long start = System.nanoTime();
+                    predictor.playTurn(board, opponent);
+                    if (!board.gameEnded() && !stopped.expired()) {
+                        result.expected = board.snapshot();
+                        result.cell = search.applyAsInt(board);
+                    }
+                    result.nanos = System.nanoTime() - start;
+                    return result;
+                });
+        PONDERS.increment();
+    }
+
+    /**
+     * Stops pondering, once the opponent has replied, and starts the
+     * accounting of the player's move. On a ponder hit the search goes on
+     * until it ends, or until the Deadline of the player's move (the
+     * current one) expires.
+     *
+     * @param actual - The board after the opponent's real reply.
+     * @return The cell the search found on a ponder hit, Board.NO_CELL on a
+     * miss (or if nothing was pondered, or the search found no move).
+     */
+    public int stop(Board actual) {
+        moveStart = System.nanoTime();
+        if (replyStart != 0) {
+            lastReplyNanos = moveStart - replyStart;
+            replyStart = 0;
+        }
+        if (pending == null) {
+            return Board.NO_CELL;
+        }
+        // a search that did not start is claimed here, so it never starts:
+        boolean started = !claimed.compareAndSet(false, true);
+        BoardSnapshot expected = pondered.expected;
+        boolean hit = started && expected != null &&
+                expected.equals(actual.snapshot());
+        if (hit) {
+            deadline.extend(Deadline.current().remainingNanos());
+        } else {
+            deadline.cancel(); // returns within a poll of its deadline
+        }
+        Pondered result = started ? await(pending) : null;
+        pending = null;
+        if (!hit || result == null) {
+            outcome = MISS;
+            MISSES.increment();
+            if (result != null) {
+                PONDER_NANOS.add(result.nanos);
+            }
+            return Board.NO_CELL;
+        }
+        outcome = HIT;
+        HITS.increment();
+        PONDER_NANOS.add(result.nanos);
+        REUSED_NANOS.add(result.nanos);
+        return result.cell;
+    }
+
+    /**
+     * Cancels pondering, e.g. when a new game starts, without counting it
+     * (or timing the reply it awaited). A search already started is waited
+     * for (within a poll of its Deadline), so the predictor and the search
+     * are free once it returns.
+     */
+    public void discard() {
+        if (pending != null) {
+            deadline.cancel();
+            if (!claimed.compareAndSet(false, true)) {
+                await(pending);
+            }
+            pending = null;
+        }
+        outcome = NONE;
+        replyStart = 0;
+    }
+
+    /**
+     * @return A line of the statistics of all the ponderers.
+     */
+    public static String getStats() {
+        long hits = HITS.sum();
+        long replies = hits + MISSES.sum(); // ponders stopped by a reply
+        return String.format(STATS_MSG, PONDERS.sum(),
+                100 * ratio(hits, replies),
+                ratio(PONDER_NANOS.sum(), replies) / NANOS_IN_MILLI,
+                ratio(REUSED_NANOS.sum(), hits) / NANOS_IN_MILLI,
+                ratio(MOVE_NANOS[HIT].sum(), MOVES[HIT].sum()) /
+                        NANOS_IN_MILLI,
+                ratio(MOVE_NANOS[MISS].sum(), MOVES[MISS].sum()) /
+                        NANOS_IN_MILLI);
+    }
+
+    /* ************ PRIVATE METHODS *********** */
+
+    /*
+        Waits for a cancelled search to return, and returns its result (null
+        if it has failed).
+     */
+    private static Pondered await(Future<Pondered> search) {
+        try {
+            return search.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return null;
+        } catch (ExecutionException e) {
+            return null;
+        }
+    }
+
+    /*
+        Returns the ratio of two counts (0 for none).
+     */
+    private static double ratio(long part, long whole) {
+        return whole == 0 ? 0 : part / (double) whole;
+    }
+}
@@ -0,0 +1,754 @@
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * A df-pn (depth-first proof-number search) solver of board positions.
+ * A proof answers whether an attacker (either mark) can force a win from a
+ * position; two proofs give its game theoretic value (win, loss or draw).
+ * - Positions are kept as two bitboards (the marks of the side to move and
+ *   of its opponent). Immediate wins, double threats and forced blocks are
+ *   spotted with the bit-parallel BitStreaks queries, so the search only
+ *   branches where the side to move has a real choice.
+ * - The 8 symmetries of the square board are reduced: every position is
+ *   keyed by its smallest symmetric image, and moves leading to symmetric
+ *   positions are only searched once.
+ * - Proof and disproof numbers are kept in a bounded, lockless ProofTable.
+ * - Several threads may search the same proof, sharing the table, each
+ *   breaking ties between equally promising moves differently. The helping
+ *   threads are those of the shared SearchScheduler.
+ * - The table may be checkpointed to disk while proving (see main, every
+ *   -Dsolver.checkpointSeconds, 60 by default), so a long proof picks up
+ *   where it stopped after a restart.
+ * A proof may be bounded by a node budget and by the Deadline of the move
+ * being played, in which case it may end up unknown.
+ *
+ * @author Matanel Pataki
+ */
+public final class ProofSolver {
+
+    /* ************ PUBLIC MEMBERS *********** */
+    public static final int UNKNOWN = 0;
+    public static final int PROVEN = 1; // the attacker wins
+    public static final int DISPROVEN = 2; // the attacker does not win
+    public static final long UNLIMITED = Long.MAX_VALUE;
+
+    /* ************ PRIVATE MEMBERS *********** */
+    private static final String USAGE_ERR = "Usage: java ProofSolver" +
+            " [moves played, in the game log alphabet, or - for none]" +
+            " [optional - threads] [optional - table bits]" +
+            " [optional - checkpoint file]";
+    private static final String RESTORED_MSG =
+            "Restored %d entries from the checkpoint";
+    private static final String PROGRESS_MSG =
+            "%d s: %d nodes searched, checkpoint written";
+    private static final String RESULT_MSG = "%s to move after %d marks: %s" +
+            " (%d nodes in %.1f s)";
+    private static final String BEST_MOVE_MSG = "Best move: %s";
+    private static final String TABLE_MSG = "Table: %s";
+    private static final String WINS = "%s wins";
+    private static final String DRAW = "draw";
+    private static final String BAD_MOVES_ERR = "Bad move list: %s";
+    private static final String CHECKPOINT_ERR =
+            "Cannot write the checkpoint %s: %s";
+    private static final String NO_MOVES = "-";
+    private static final String ENGINE = "df-pn";
+    private static final String[] RESULT_NAMES =
+            {"unknown", "proven", "disproven"}; // by result
+    private static final int CELLS = Board.SIZE * Board.SIZE;
+    private static final int INFINITY = ProofTable.INFINITY;
+    private static final int CHECK_INTERVAL = 1024; // nodes between polls
+    private static final int DEFAULT_TABLE_BITS = 22;
+    private static final long CHECKPOINT_SECONDS =
+            Long.getLong("solver.checkpointSeconds", 60);
+    private static final int TO_MOVE_WINS = 1;
+    private static final int TO_MOVE_LOSES = 2;
+    private static final int DRAWN = 3;
+    private static final int OPEN = 0;
+    private static final int MOVES = 0;
+    private static final int THREADS = 1;
+    private static final int TABLE_BITS = 2;
+    private static final int CHECKPOINT = 3;
+    private static final int SYMMETRIES = 8;
+    private static final long ATTACKING_CODE = 0x5DEECE66DL;
+    // random codes of the cells of the side to move and of its opponent,
+    // as mapped by every symmetry (see keyOf):
+    private static final long[][] OWN_CODES = new long[SYMMETRIES][CELLS];
+    private static final long[][] OPP_CODES = new long[SYMMETRIES][CELLS];
+    private static final int[] CENTER_FIRST = buildCenterFirst();
+    private static final BitStreaks STREAKS =
+            new BitStreaks(Board.SIZE, Board.WIN_STREAK);
+
+    static {
+        buildCodes();
+    }
+    private final ProofTable table;
+    private final Searcher[] searchers;
+    private final AtomicLong nodes = new AtomicLong();
+    private volatile boolean stopped;
+    private volatile Deadline deadline = Deadline.NONE;
+    private volatile long nodeBudget;
+
+    /**
+     * CONSTRUCTOR -
+     * Initializes a solver.
+     *
+     * @param tableBits - log2 of the number of transposition table entries.
+     * @param threads   - Number of threads searching every proof.
+     */
+    public ProofSolver(int tableBits, int threads) {
+        this(new ProofTable(tableBits), threads);
+    }
+
+    /**
+     * CONSTRUCTOR -
+     * Initializes a solver proving into the given table, which may be
+     * shared with other solvers.
+     *
+     * @param table   - The transposition table.
+     * @param threads - Number of threads searching every proof.
+     */
+    public ProofSolver(ProofTable table, int threads) {
+        this.table = table;
+        this.searchers = new Searcher[Math.max(1, threads)];
+        for (int i = 0; i < searchers.length; i++) {
+            searchers[i] = new Searcher(i);
+        }
+    }
+
+    /* ************ PUBLIC METHODS *********** */
+
+    /**
+     * Tries to prove that the attacker can force a win from the given
+     * position. Stops early once the node budget is spent, or once the
+     * deadline of the current move expires.
+     *
+     * @param board      - The position.
+     * @param toMove     - The mark to move.
+     * @param attacker   - The mark to prove a win for.
+     * @param nodeBudget - Maximal number of nodes to search, UNLIMITED for
+     *                   no limit.
+     * @return PROVEN, DISPROVEN or UNKNOWN.
+     */
+    public synchronized int prove(Board board, Mark toMove, Mark attacker,
+                                  long nodeBudget) {
+        if (board.gameEnded()) {
+            return board.getWinner() == attacker ? PROVEN : DISPROVEN;
+        }
+        BoardSnapshot snapshot = board.snapshot();
+        long own = toMove == Mark.X ? snapshot.getXBits() : snapshot.getOBits();
+        long opp = toMove == Mark.X ? snapshot.getOBits() : snapshot.getXBits();
+        boolean attacking = toMove == attacker;
+        long key = keyOf(own, opp, attacking);
+        int result = classify(table.probe(key));
+        if (result != UNKNOWN) {
+            return result;
+        }
+        GameEvents.SearchIteration event = new GameEvents.SearchIteration();
+        event.begin();
+        this.stopped = false;
+        this.deadline = Deadline.current();
+        this.nodeBudget = nodeBudget;
+        this.nodes.set(0);
+        // helpers run on the shared scheduler; one that did not start by
+        // the end of the proof is claimed here, so it never starts:
+        List<Future<?>> helping = new ArrayList<>();
+        AtomicBoolean[] claimed = new AtomicBoolean[searchers.length];
+        for (int i = 1; i < searchers.length; i++) {
+            Searcher searcher = searchers[i];
+            AtomicBoolean claim = claimed[i] = new AtomicBoolean();
+            helping.add(SearchScheduler.getDefault().submit(deadline, () -> {
+                if (claim.compareAndSet(false, true)) {
+                    searcher.search(own, opp, attacking, key);
+                }
+                return null;
+            }));
+        }
+        searchers[0].search(own, opp, attacking, key);
+        stopped = true;
+        for (int i = 1; i < searchers.length; i++) {
+            if (!claimed[i].compareAndSet(false, true)) {
+                awaitHelper(helping.get(i - 1));
+            }
+        }
+        result = classify(table.probe(key));
+        if (result == UNKNOWN) {
+            result = classify(pack(searchers[0].resultPn,
+                    searchers[0].resultDn));
+        }
+        event.end();
+        if (event.shouldCommit()) {
+            event.engine = ENGINE;
+            event.nodes = nodes.get();
+            event.result = RESULT_NAMES[result];
+            event.commit();
+        }
+        return result;
+    }
+
+    /**
+     * Finds the game theoretic value of a position.
+     *
+     * @param board      - The position.
+     * @param toMove     - The mark to move.
+     * @param nodeBudget - Maximal number of nodes of each of the two proofs.
+     * @return The winner under perfect play: X, O or BLANK for a draw,
+     * null if unknown within the budget.
+     */
+    public Mark solve(Board board, Mark toMove, long nodeBudget) {
+        Mark opponent = toMove == Mark.X ? Mark.O : Mark.X;
+        int result = prove(board, toMove, toMove, nodeBudget);
+        if (result != DISPROVEN) {
+            return result == PROVEN ? toMove : null;
+        }
+        result = prove(board, toMove, opponent, nodeBudget);
+        if (result == UNKNOWN) {
+            return null;
+        }
+        return result == PROVEN ? opponent : Mark.BLANK;
+    }
+
+    /**
+     * Finds a proven optimal move: a winning move if the position is won,
+     * a move keeping the draw if it is drawn.
+     *
+     * @param board      - The position.
+     * @param toMove     - The mark to move.
+     * @param nodeBudget - Maximal number of nodes of each of the proofs.
+     * @return The cell index of the move, Board.NO_CELL if the position is
+     * lost, unknown within the budget, or the move was not kept in the table.
+     */
+    public int findBestMove(Board board, Mark toMove, long nodeBudget) {
+        Mark value = solve(board, toMove, nodeBudget);
+        if (value == toMove) {
+            return findSolvedMove(board, toMove, true);
+        }
+        if (value == Mark.BLANK) {
+            return findSolvedMove(board, toMove, false);
+        }
+        return Board.NO_CELL;
+    }
+
+    /**
+     * @return The number of nodes searched by the last proof.
+     */
+    public long getNodes() {
+        return nodes.get();
+    }
+
+    /**
+     * @return The statistics of the transposition table.
+     */
+    public String getTableStats() {
+        return table.getStats();
+    }
+
+    /**
+     * Writes the transposition table to a checkpoint file.
+     *
+     * @param path - The checkpoint file.
+     * @param tag  - Identifies the proof (see ProofTable.save).
+     * @throws IOException If the checkpoint could not be written.
+     */
+    public void checkpoint(String path, long tag) throws IOException {
+        table.save(path, tag);
+    }
+
+    /**
+     * Restores the transposition table from a checkpoint file.
+     *
+     * @param path - The checkpoint file.
+     * @param tag  - Identifies the proof (see ProofTable.save).
+     * @return The number of entries restored, -1 if there was none.
+     * @throws IOException If the checkpoint could not be read.
+     */
+    public long restore(String path, long tag) throws IOException {
+        return table.restore(path, tag);
+    }
+
+    /* ************ PRIVATE METHODS *********** */
+
+    /*
+        Waits for a helper that has started searching to stop.
+     */
+    private static void awaitHelper(Future<?> helper) {
+        try {
+            helper.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (ExecutionException e) {
+            throw new IllegalStateException(e.getCause());
+        }
+    }
+
+    /*
+        Picks, from the table, a move leading to a position proven won for
+        the mover (win true) or disproven for the opponent (win false).
+     */
+    private int findSolvedMove(Board board, Mark toMove, boolean win) {
+        BoardSnapshot snapshot = board.snapshot();
+        long own = toMove == Mark.X ? snapshot.getXBits() : snapshot.getOBits();
+        long opp = toMove == Mark.X ? snapshot.getOBits() : snapshot.getXBits();
+        long empty = ~(own | opp) & Board.ALL_CELLS;
+        long wins = STREAKS.completingCells(own, empty);
+        if (wins != 0) {
+            return Long.numberOfTrailingZeros(wins);
+        }
+        long threats = STREAKS.completingCells(opp, empty);
+        long candidates = threats != 0 ? threats : empty;
+        for (; candidates != 0; candidates &= candidates - 1) {
+            int cell = Long.numberOfTrailingZeros(candidates);
+            long childOwn = opp;
+            long childOpp = own | (1L << cell);
+            // the child is searched with the opponent attacking (win true)
+            // or with the opponent defending (win false):
+            boolean attacking = !win;
+            int status = terminalStatus(childOwn, childOpp);
+            int result = status == OPEN ?
+                    classify(table.probe(keyOf(childOwn, childOpp, attacking)))
+                    : classify(terminalData(status, attacking));
+            if (result == DISPROVEN && attacking ||
+                    result == PROVEN && !attacking) {
+                return cell;
+            }
+        }
+        return Board.NO_CELL;
+    }
+
+    /*
+        Returns the status of a position, with own to move: TO_MOVE_WINS at
+        once, TO_MOVE_LOSES to a double threat, DRAWN (a full board) or OPEN.
+     */
+    private static int terminalStatus(long own, long opp) {
+        long empty = ~(own | opp) & Board.ALL_CELLS;
+        if (STREAKS.completingCells(own, empty) != 0) {
+            return TO_MOVE_WINS;
+        }
+        if (Long.bitCount(STREAKS.completingCells(opp, empty)) > 1) {
+            return TO_MOVE_LOSES;
+        }
+        return empty == 0 ? DRAWN : OPEN;
+    }
+
+    /*
+        Returns the packed table data of a terminal position, with the
+        attacker to move or not.
+     */
+    private static long terminalData(int status, boolean attacking) {
+        boolean attackerWins = status == TO_MOVE_WINS && attacking ||
+                status == TO_MOVE_LOSES && !attacking;
+        return attackerWins ? pack(0, INFINITY) : pack(INFINITY, 0);
+    }
+
+    /*
+        Packs proof numbers as ProofTable data.
+     */
+    private static long pack(int pn, int dn) {
+        return pn | ((long) dn << 28);
+    }
+
+    /*
+        Returns PROVEN, DISPROVEN or UNKNOWN, according to table data.
+     */
+    private static int classify(long data) {
+        if (data == 0) {
+            return UNKNOWN;
+        }
+        if (ProofTable.proofNumber(data) == 0) {
+            return PROVEN;
+        }
+        return ProofTable.disproofNumber(data) == 0 ? DISPROVEN : UNKNOWN;
+    }
+
+    /*
+        Returns the key of a position. Every symmetry gives the position a
+        hash (a xor of the codes of its cells, as mapped by the symmetry),
+        and the smallest of the 8 hashes is the same for all the symmetric
+        images of the position.
+     */
+    private static long keyOf(long own, long opp, boolean attacking) {
+        long smallest = Long.MAX_VALUE;
+        for (int s = 0; s < SYMMETRIES; s++) {
+            smallest = Math.min(smallest, codeOf(own, OWN_CODES[s]) ^
+                    codeOf(opp, OPP_CODES[s]));
+        }
+        return keyOfCode(smallest, attacking);
+    }
+
+    /*
+        Returns the key of a position, given its smallest hash.
+     */
+    private static long keyOfCode(long smallest, boolean attacking) {
+        return mix(smallest ^ (attacking ? ATTACKING_CODE : 0));
+    }
+
+    /*
+        Xors the codes of the given cells.
+     */
+    private static long codeOf(long bits, long[] codes) {
+        long code = 0;
+        for (; bits != 0; bits &= bits - 1) {
+            code ^= codes[Long.numberOfTrailingZeros(bits)];
+        }
+        return code;
+    }
+
+    /*
+        Scrambles the bits of a long (the SplitMix64 finalizer).
+     */
+    private static long mix(long z) {
+        z = (z ^ (z >>> 30)) * 0xBF58476D1CE4E5B9L;
+        z = (z ^ (z >>> 27)) * 0x94D049BB133111EBL;
+        return z ^ (z >>> 31);
+    }
+
+    /*
+        Draws the random codes of the cells, and maps them by each of the 8
+        symmetries of the square board (the identity first).
+     */
+    private static void buildCodes() {
+        int n = Board.SIZE;
+        Random random = new Random(CELLS);
+        long[] own = new long[CELLS];
+        long[] opp = new long[CELLS];
+        for (int cell = 0; cell < CELLS; cell++) {
+            own[cell] = random.nextLong();
+            opp[cell] = random.nextLong();
+        }
+        for (int row = 0; row < n; row++) {
+            for (int col = 0; col < n; col++) {
+                int[][] images = {{row, col}, {col, n - 1 - row},
+                        {n - 1 - row, n - 1 - col}, {n - 1 - col, row},
+                        {row, n - 1 - col}, {n - 1 - row, col},
+                        {col, row}, {n - 1 - col, n - 1 - row}};
+                for (int s = 0; s < SYMMETRIES; s++) {
+                    int image = images[s][0] * n + images[s][1];
+                    OWN_CODES[s][row * n + col] = own[image];
+                    OPP_CODES[s][row * n + col] = opp[image];
+                }
+            }
+        }
+    }
+
+    /*
+        Orders the cells from the center of the board outwards, as the
+        central cells take part in the most winning lines.
+     */
+    private static int[] buildCenterFirst() {
+        Integer[] cells = new Integer[CELLS];
+        for (int cell = 0; cell < CELLS; cell++) {
+            cells[cell] = cell;
+        }
+        double center = (Board.SIZE - 1) / 2.0;
+        Arrays.sort(cells, (a, b) -> Double.compare(
+                Math.abs(a / Board.SIZE - center) +
+                        Math.abs(a % Board.SIZE - center),
+                Math.abs(b / Board.SIZE - center) +
+                        Math.abs(b % Board.SIZE - center)));
+        int[] order = new int[CELLS];
+        for (int i = 0; i < CELLS; i++) {
+            order[i] = cells[i];
+        }
+        return order;
+    }
+
+    /*
+        Adds proof numbers, keeping INFINITY for infinite sums only.
+     */
+    private static int add(int sum, int value) {
+        if (sum == INFINITY || value == INFINITY) {
+            return INFINITY;
+        }
+        return Math.min(INFINITY - 1, sum + value);
+    }
+
+    /*
+        The threshold of a child: the node's threshold, less what the other
+        children already contribute.
+     */
+    private static int childThreshold(int threshold, int node, int child) {
+        return threshold == INFINITY ? INFINITY :
+                Math.min(INFINITY, threshold - node + child);
+    }
+
+    /*
+        A single searching thread, with its own per depth move lists.
+     */
+    private final class Searcher {
+        private final int rotation; // tie breaking, per thread
+        private final int[][] moves = new int[CELLS + 1][CELLS];
+        private final long[][] keys = new long[CELLS + 1][CELLS];
+        private final int[][] proofs = new int[CELLS + 1][CELLS];
+        private final int[][] disproofs = new int[CELLS + 1][CELLS];
+        // per depth, the hashes of the node by symmetry (see keyOf), then
+        // the hashes of the same node with the roles of the marks swapped:
+        private final long[][] codes = new long[CELLS + 1][2 * SYMMETRIES];
+        private int resultPn; // the numbers of the last node searched
+        private int resultDn;
+        private long searched; // nodes searched by this thread
+        private long counted; // of which added to the shared node count
+
+        private Searcher(int rotation) {
+            this.rotation = rotation;
+        }
+
+        /*
+            Searches the root until it is solved or the search is stopped.
+         */
+        private void search(long own, long opp, boolean attacking, long key) {
+            for (int s = 0; s < SYMMETRIES; s++) {
+                codes[0][s] = codeOf(own, OWN_CODES[s]) ^
+                        codeOf(opp, OPP_CODES[s]);
+                codes[0][SYMMETRIES + s] = codeOf(opp, OWN_CODES[s]) ^
+                        codeOf(own, OPP_CODES[s]);
+            }
+            mid(0, own, opp, attacking, key, INFINITY, INFINITY);
+            nodes.addAndGet(searched - counted);
+            counted = searched;
+            if (resultPn == 0 || resultDn == 0) {
+                stopped = true;
+            }
+        }
+
+        /*
+            Searches a node until its proof number reaches thpn or its
+            disproof number reaches thdn (the MID procedure of df-pn).
+         */
+        private void mid(int depth, long own, long opp, boolean attacking,
+                         long key, int thpn, int thdn) {
+            long start = searched;
+            if (++searched % CHECK_INTERVAL == 0) {
+                checkLimits();
+            }
+            int count = expand(depth, own, opp, attacking);
+            if (count == 0) {
+                table.store(key, resultPn, resultDn, 1);
+                return;
+            }
+            int[] cells = moves[depth];
+            long[] childKeys = keys[depth];
+            int[] pn = proofs[depth];
+            int[] dn = disproofs[depth];
+            int nodePn;
+            int nodeDn;
+            while (true) {
+                int best = -1;
+                int bestValue = INFINITY + 1;
+                int secondValue = INFINITY;
+                int sum = 0;
+                for (int i = 0; i < count; i++) {
+                    int child = (i + rotation) % count;
+                    long data = table.probe(childKeys[child]);
+                    if (data != 0) {
+                        pn[child] = ProofTable.proofNumber(data);
+                        dn[child] = ProofTable.disproofNumber(data);
+                    }
+                    int value = attacking ? pn[child] : dn[child];
+                    sum = add(sum, attacking ? dn[child] : pn[child]);
+                    if (value < bestValue) {
+                        secondValue = Math.min(secondValue, bestValue);
+                        bestValue = value;
+                        best = child;
+                    } else if (value < secondValue) {
+                        secondValue = value;
+                    }
+                }
+                nodePn = attacking ? bestValue : sum;
+                nodeDn = attacking ? sum : bestValue;
+                if (nodePn >= thpn || nodeDn >= thdn || stopped) {
+                    break;
+                }
+                int second = secondValue >= INFINITY - 1 ? INFINITY :
+                        secondValue + 1;
+                int childPn = attacking ? Math.min(thpn, second) :
+                        childThreshold(thpn, nodePn, pn[best]);
+                int childDn = attacking ?
+                        childThreshold(thdn, nodeDn, dn[best]) :
+                        Math.min(thdn, second);
+                playCodes(depth, cells[best]);
+                mid(depth + 1, opp, own | (1L << cells[best]), !attacking,
+                        childKeys[best], childPn, childDn);
+                pn[best] = resultPn;
+                dn[best] = resultDn;
+            }
+            table.store(key, nodePn, nodeDn, searched - start);
+            resultPn = nodePn;
+            resultDn = nodeDn;
+        }
+
+        /*
+            Lists the moves of a node, with the initial numbers of their
+            positions, skipping symmetric duplicates. Returns the number of
+            moves, 0 for a terminal node (whose numbers are then the result).
+         */
+        private int expand(int depth, long own, long opp, boolean attacking) {
+            int status = terminalStatus(own, opp);
+            if (status != OPEN) {
+                long data = terminalData(status, attacking);
+                resultPn = ProofTable.proofNumber(data);
+                resultDn = ProofTable.disproofNumber(data);
+                return 0;
+            }
+            long empty = ~(own | opp) & Board.ALL_CELLS;
+            long threats = STREAKS.completingCells(opp, empty);
+            long candidates = threats != 0 ? threats : empty;
+            int count = 0;
+            for (int cell : CENTER_FIRST) {
+                if ((candidates & (1L << cell)) == 0) {
+                    continue;
+                }
+                long childOpp = own | (1L << cell);
+                long key = childKey(depth, cell, !attacking);
+                if (isDuplicate(depth, count, key)) {
+                    continue;
+                }
+                // the opponent has no win at once (any threat was blocked),
+                // but may face a double threat:
+                long childEmpty = empty & ~(1L << cell);
+                int childStatus = Long.bitCount(STREAKS.completingCells(
+                        childOpp, childEmpty)) > 1 ? TO_MOVE_LOSES :
+                        childEmpty == 0 ? DRAWN : OPEN;
+                long data = childStatus != OPEN ?
+                        terminalData(childStatus, !attacking) :
+                        table.probe(key);
+                moves[depth][count] = cell;
+                keys[depth][count] = key;
+                proofs[depth][count] = data == 0 ? 1 :
+                        ProofTable.proofNumber(data);
+                disproofs[depth][count] = data == 0 ? 1 :
+                        ProofTable.disproofNumber(data);
+                if (childStatus != OPEN) {
+                    table.store(key, proofs[depth][count],
+                            disproofs[depth][count], 1);
+                }
+                count++;
+            }
+            return count;
+        }
+
+        /*
+            Returns the key of the position after a move, from the hashes
+            of the node (with the roles of the marks swapped).
+         */
+        private long childKey(int depth, int cell, boolean attacking) {
+            long[] node = codes[depth];
+            long smallest = Long.MAX_VALUE;
+            for (int s = 0; s < SYMMETRIES; s++) {
+                smallest = Math.min(smallest,
+                        node[SYMMETRIES + s] ^ OPP_CODES[s][cell]);
+            }
+            return keyOfCode(smallest, attacking);
+        }
+
+        /*
+            Computes the hashes of the position after a move, at the next
+            depth.
+         */
+        private void playCodes(int depth, int cell) {
+            long[] node = codes[depth];
+            long[] child = codes[depth + 1];
+            for (int s = 0; s < SYMMETRIES; s++) {
+                child[s] = node[SYMMETRIES + s] ^ OPP_CODES[s][cell];
+                child[SYMMETRIES + s] = node[s] ^ OWN_CODES[s][cell];
+            }
+        }
+
+        /*
+            Checks whether a move leads to a position symmetric to that of
+            a move already listed.
+         */
+        private boolean isDuplicate(int depth, int count, long key) {
+            for (int i = 0; i < count; i++) {
+                if (keys[depth][i] == key) {
+                    return true;
+                }
+            }
+            return false;
+        }
+
+        /*
+            Stops the search once the budget is spent or time is up.
+         */
+        private void checkLimits() {
+            long total = nodes.addAndGet(searched - counted);
+            counted = searched;
+            if (total >= nodeBudget ||
+                    deadline.expired()) {
+                stopped = true;
+            }
+        }
+    }
+
+    /* ************ MAIN *********** */
+
+    public static void main(String[] args) throws Exception {
+        if (args.length < 1 || args.length > CHECKPOINT + 1) {
+            System.err.println(USAGE_ERR);
+            return;
+        }
+        Board board = new Board();
+        Mark toMove = Mark.X;
+        String played = args[MOVES].equals(NO_MOVES) ? "" : args[MOVES];
+        for (char move : played.toCharArray()) {
+            int cell = GameRecord.CELL_ALPHABET.indexOf(move);
+            if (cell < 0 || cell >= CELLS || board.gameEnded() ||
+                    !board.putMark(toMove, cell / Board.SIZE,
+                            cell % Board.SIZE)) {
+                System.err.println(String.format(BAD_MOVES_ERR, played));
+                return;
+            }
+            toMove = toMove == Mark.X ? Mark.O : Mark.X;
+        }
+        int threads = args.length > THREADS ? Integer.parseInt(args[THREADS])
+                : Runtime.getRuntime().availableProcessors();
+        int tableBits = args.length > TABLE_BITS ?
+                Integer.parseInt(args[TABLE_BITS]) : DEFAULT_TABLE_BITS;
+        ProofSolver solver = new ProofSolver(tableBits, threads);
+        ScheduledExecutorService checkpoints = null;
+        String checkpoint = args.length > CHECKPOINT ? args[CHECKPOINT] : null;
+        long tag = keyOf(0, 0, true) ^ played.hashCode();
+        long start = System.nanoTime();
+        if (checkpoint != null) {
+            long restored = solver.restore(checkpoint, tag);
+            if (restored >= 0) {
+                System.out.println(String.format(RESTORED_MSG, restored));
+            }
+            checkpoints = Executors.newSingleThreadScheduledExecutor();
+            checkpoints.scheduleWithFixedDelay(() -> {
+                try {
+                    solver.checkpoint(checkpoint, tag);
+                    System.out.println(String.format(PROGRESS_MSG,
+                            (System.nanoTime() - start) / 1_000_000_000L,
+                            solver.getNodes()));
+                } catch (IOException e) {
+                    System.err.println(String.format(CHECKPOINT_ERR,
+                            checkpoint, e.getMessage()));
+                }
+            }, CHECKPOINT_SECONDS, CHECKPOINT_SECONDS, TimeUnit.SECONDS);
+        }
+        Mark value = solver.solve(board, toMove, UNLIMITED);
+        int bestMove = solver.findBestMove(board, toMove, UNLIMITED);
+        if (checkpoints != null) {
+            checkpoints.shutdownNow();
+            solver.checkpoint(checkpoint, tag);
+        }
+        System.out.println(String.format(RESULT_MSG, toMove,
+                board.getMarksPlaced(), value == Mark.BLANK ? DRAW :
+                        String.format(WINS, value), solver.getNodes(),
+                (System.nanoTime() - start) / 1e9));
+        if (bestMove != Board.NO_CELL) {
+            System.out.println(String.format(BEST_MOVE_MSG,
+                    GameRecord.toMoveChar(bestMove)));
+        }
+        System.out.println(String.format(TABLE_MSG, solver.getTableStats()));
+    }
+}
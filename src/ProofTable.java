@@ -0,0 +1,174 @@
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+
+/**
+ * A bounded transposition table of proof and disproof numbers, shared
+ * without locks between the threads of a ProofSolver (and between solvers).
+ * The numbers are kept off the heap, in an OffHeapTable, with the work it
+ * took to compute them as the priority of their entry - so a full bucket
+ * replaces its entry that took the least work to compute.
+ * The table may be checkpointed to a file and restored from it, so that
+ * long proofs survive restarts.
+ *
+ * @author Matanel Pataki
+ */
+public final class ProofTable {
+
+    /* ************ PUBLIC MEMBERS *********** */
+    public static final int INFINITY = (1 << 28) - 1; // proof numbers limit
+    // of the keys (see ProofSolver.keyOf) and of the packed data, as a table
+    // file tells them (see OffHeapTable.map) - to change with either:
+    public static final int FORMAT = 1;
+
+    /* ************ PRIVATE MEMBERS *********** */
+    private static final int NUMBER_BITS = 28;
+    private static final long NUMBER_MASK = (1L << NUMBER_BITS) - 1;
+    private static final int WORK_SHIFT = OffHeapTable.PRIORITY_SHIFT;
+    private static final int MAGIC = 0x44465054; // "DFPT"
+    private static final String TEMP_SUFFIX = ".tmp";
+    private final OffHeapTable entries;
+    private final int tableBits;
+
+    /**
+     * CONSTRUCTOR -
+     * Initializes an empty table.
+     *
+     * @param tableBits - log2 of the number of entries (e.g. 20 for about a
+     *                  million entries, of 16 bytes each), at most 26.
+     */
+    public ProofTable(int tableBits) {
+        this(OffHeapTable.withEntries(tableBits));
+    }
+
+    /**
+     * CONSTRUCTOR -
+     * Initializes a table kept in the given storage (e.g. a memory-mapped
+     * one, persisting across runs).
+     *
+     * @param entries - The storage of the table.
+     */
+    public ProofTable(OffHeapTable entries) {
+        this.entries = entries;
+        this.tableBits = Integer.numberOfTrailingZeros(entries.capacity());
+    }
+
+    /* ************ PUBLIC METHODS *********** */
+
+    /**
+     * Looks a position up.
+     *
+     * @param key - The key of the position.
+     * @return The packed data of the position (see proofNumber and
+     * disproofNumber), 0 if it is not in the table.
+     */
+    public long probe(long key) {
+        return entries.probe(key);
+    }
+
+    /**
+     * Stores the numbers of a position.
+     *
+     * @param key   - The key of the position.
+     * @param pn    - The proof number of the position.
+     * @param dn    - The disproof number of the position.
+     * @param nodes - The number of nodes searched to compute the numbers.
+     */
+    public void store(long key, int pn, int dn, long nodes) {
+        entries.store(key, pn | ((long) dn << NUMBER_BITS) |
+                ((long) (Long.SIZE - Long.numberOfLeadingZeros(
+                        Math.max(1, nodes))) << WORK_SHIFT));
+    }
+
+    /**
+     * @param data - Packed data, as returned by probe.
+     * @return The proof number held in the data.
+     */
+    public static int proofNumber(long data) {
+        return (int) (data & NUMBER_MASK);
+    }
+
+    /**
+     * @param data - Packed data, as returned by probe.
+     * @return The disproof number held in the data.
+     */
+    public static int disproofNumber(long data) {
+        return (int) ((data >>> NUMBER_BITS) & NUMBER_MASK);
+    }
+
+    /**
+     * @return The statistics of the table (see OffHeapTable.toString).
+     */
+    public String getStats() {
+        return entries.toString();
+    }
+
+    /**
+     * Writes all the entries of the table to a checkpoint file. The file is
+     * replaced atomically, so a crash while writing keeps the previous
+     * checkpoint.
+     *
+     * @param path - The checkpoint file.
+     * @param tag  - Identifies the proof (e.g. the key of its root), so a
+     *             checkpoint is only restored into the same proof.
+     * @throws IOException If the checkpoint could not be written.
+     */
+    public void save(String path, long tag) throws IOException {
+        Path temp = Paths.get(path + TEMP_SUFFIX);
+        try (DataOutputStream out = new DataOutputStream(
+                new BufferedOutputStream(new FileOutputStream(
+                        temp.toFile())))) {
+            out.writeInt(MAGIC);
+            out.writeInt(tableBits);
+            out.writeLong(tag);
+            for (int i = 0; i < entries.capacity(); i++) {
+                long data = entries.dataAt(i);
+                if (data != OffHeapTable.MISS) {
+                    out.writeLong(entries.keyAt(i, data));
+                    out.writeLong(data);
+                }
+            }
+        }
+        Files.move(temp, Paths.get(path), StandardCopyOption.REPLACE_EXISTING,
+                StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    /**
+     * Restores the entries of a checkpoint file into the table.
+     *
+     * @param path - The checkpoint file.
+     * @param tag  - Identifies the proof, as given to save.
+     * @return The number of entries restored, -1 if there is no checkpoint
+     * of the given proof in the file.
+     * @throws IOException If the checkpoint could not be read.
+     */
+    public long restore(String path, long tag) throws IOException {
+        if (!Files.exists(Paths.get(path))) {
+            return -1;
+        }
+        try (DataInputStream in = new DataInputStream(
+                new BufferedInputStream(new FileInputStream(path)))) {
+            if (in.readInt() != MAGIC || in.readInt() != tableBits ||
+                    in.readLong() != tag) {
+                return -1;
+            }
+            long restored = 0;
+            while (in.available() > 0) {
+                long key = in.readLong();
+                long data = in.readLong();
+                store(key, proofNumber(data), disproofNumber(data),
+                        1L << ((data >>> WORK_SHIFT) - 1));
+                restored++;
+            }
+            return restored;
+        }
+    }
+}
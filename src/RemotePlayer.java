@@ -0,0 +1,40 @@
+/**
+ * Represents a Player connected to the game server over the network.
+ * The server feeds this player with the moves received from the remote
+ * client, and the player places them on the board at its turn, which lets a
+ * remote engine take part in a regular game.
+ *
+ * @author Matanel Pataki
+ */
+public class RemotePlayer implements Player {
+
+    /* ************ PRIVATE MEMBERS *********** */
+    private static final int NO_MOVE = -1;
+    private int pendingCell = NO_MOVE; // the move received, not placed yet
+
+    /* ************ PUBLIC METHODS *********** */
+
+    /**
+     * Receives the next move of the remote client.
+     *
+     * @param cell - The cell index (row * Board.SIZE + col) to place in.
+     */
+    public void offerMove(int cell) {
+        this.pendingCell = cell;
+    }
+
+    /**
+     * Places the move received from the remote client, if any.
+     *
+     * @param board - The board to place the mark in.
+     * @param mark  - The type of mark to be placed.
+     */
+    @Override
+    public void playTurn(Board board, Mark mark) {
+        if (pendingCell != NO_MOVE) {
+            board.putMark(mark, pendingCell / Board.SIZE,
+                    pendingCell % Board.SIZE);
+            pendingCell = NO_MOVE;
+        }
+    }
+}
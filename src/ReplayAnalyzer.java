@@ -0,0 +1,315 @@
+import java.io.BufferedReader;
+import java.io.FileReader;
+import java.io.IOException;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * A replay and position analysis tool over game logs
+ * (as recorded by running the Tournament with -Dtournament.record=[file]).
+ * Streams through the log, rebuilds the positions of every decisive game on
+ * a Board, and finds the first move of the loser after which the winner had
+ * a forced win - the move that was refuted, and the winner's refuting move.
+ * Forced wins are proven by a ProofSolver (of every analyzing thread) within
+ * a node budget, so a win too deep to prove within it is not reported.
+ * A record with an illegal move (on an occupied cell, or after the game
+ * ended) is counted as malformed, and not analyzed.
+ * The chosen engine (any non-human player type) is then re-run on the
+ * position before the refuted move, to see whether it would have held.
+ * Games are analyzed in parallel batches, with a bounded number of batches in
+ * flight, so logs of any size are analyzed in constant memory. The report
+ * keeps the order of the log.
+ *
+ * @author Matanel Pataki
+ */
+public class ReplayAnalyzer {
+
+    /* ************ PRIVATE MEMBERS *********** */
+    private static final String USAGE_ERR = "Usage: java ReplayAnalyzer" +
+            " [game log]" +
+            " [engine: clever/whatever/snartypamts/neural/solver]" +
+            " [optional - threads] [optional - loser type to analyze]";
+    private static final String REFUTED_MSG = "game %d (%s vs %s): %s played" +
+            " %s at ply %d, refuted by %s; %s plays %s - %s";
+    private static final String SUMMARY_MSG = "=== games: %d | decisive: %d" +
+            " | refuted: %d | engine holds: %d | malformed: %d ===";
+    private static final String HOLDS = "holds";
+    private static final String ALSO_LOSES = "also loses";
+    private static final String PASSES = "--";
+    private static final int LOG = 0;
+    private static final int ENGINE = 1;
+    private static final int THREADS = 2;
+    private static final int LOSER_TYPE = 3;
+    private static final int BATCH_SIZE = 256;
+    private static final int BATCHES_PER_THREAD = 2;
+    private static final long FORCED_WIN_NODES = 20_000;
+    private static final int TABLE_BITS = 18;
+    private static final int TOTALS = 5; // indices of the totals:
+    private static final int GAMES = 0;
+    private static final int DECISIVE = 1;
+    private static final int REFUTED = 2;
+    private static final int ENGINE_HOLDS = 3;
+    private static final int MALFORMED = 4;
+    private final String engineType;
+    private final String loserType; // null to analyze every loser
+    private final int threads;
+    private final PlayerFactory playerFactory = new PlayerFactory();
+    private final int[] totals = new int[TOTALS];
+    private final ThreadLocal<ProofSolver> solvers =
+            ThreadLocal.withInitial(() -> new ProofSolver(TABLE_BITS, 1));
+
+    /**
+     * CONSTRUCTOR -
+     * Initializes the analyzer.
+     *
+     * @param engineType - The type of player to re-run on refuted positions.
+     * @param threads    - Number of threads to analyze with.
+     * @param loserType  - Only analyze games lost by this player type
+     *                   (e.g. CleverPlayer), null to analyze all the games.
+     */
+    public ReplayAnalyzer(String engineType, int threads, String loserType) {
+        this.engineType = engineType;
+        this.threads = threads;
+        this.loserType = loserType;
+    }
+
+    /* ************ PUBLIC METHODS *********** */
+
+    /**
+     * Analyzes the given game log, printing a line for every refuted game
+     * and a summary at the end.
+     *
+     * @param in - The reader of the game log.
+     * @throws IOException If the log could not be read.
+     */
+    public void analyze(BufferedReader in) throws IOException {
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        Deque<Future<Batch>> inFlight = new ArrayDeque<>();
+        try {
+            int gameNumber = 1;
+            List<String> lines = new ArrayList<>(BATCH_SIZE);
+            String line;
+            while ((line = in.readLine()) != null) {
+                lines.add(line);
+                if (lines.size() == BATCH_SIZE) {
+                    submit(executor, inFlight, lines, gameNumber);
+                    gameNumber += BATCH_SIZE;
+                    lines = new ArrayList<>(BATCH_SIZE);
+                }
+            }
+            if (!lines.isEmpty()) {
+                submit(executor, inFlight, lines, gameNumber);
+            }
+            while (!inFlight.isEmpty()) {
+                report(inFlight.removeFirst());
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+        System.out.println(String.format(SUMMARY_MSG, totals[GAMES],
+                totals[DECISIVE], totals[REFUTED], totals[ENGINE_HOLDS],
+                totals[MALFORMED]));
+    }
+
+    /**
+     * Looks for a forced win of the given mark: an immediate win, or a win
+     * the solver proves within the node budget.
+     *
+     * @param solver     - The solver to prove the win with.
+     * @param board      - The position, with the given mark to move.
+     * @param mark       - The mark to look for a forced win for.
+     * @param nodeBudget - Maximal number of nodes of the proof.
+     * @return The cell index of the winning move, Board.NO_CELL if none was
+     * found.
+     */
+    public static int findForcedWin(ProofSolver solver, Board board,
+                                    Mark mark, long nodeBudget) {
+        long wins = board.getWinningCells(mark);
+        if (wins != 0) {
+            return Long.numberOfTrailingZeros(wins);
+        }
+        if (solver.prove(board, mark, mark, nodeBudget) !=
+                ProofSolver.PROVEN) {
+            return Board.NO_CELL;
+        }
+        return solver.findBestMove(board, mark, nodeBudget);
+    }
+
+    /* ************ PRIVATE METHODS *********** */
+
+    /*
+        Submits a batch of games for analysis, first reporting the oldest
+        batches if too many are in flight.
+     */
+    private void submit(ExecutorService executor,
+                        Deque<Future<Batch>> inFlight,
+                        List<String> lines, int firstGame) throws IOException {
+        while (inFlight.size() >= threads * BATCHES_PER_THREAD) {
+            report(inFlight.removeFirst());
+        }
+        inFlight.addLast(executor.submit(() -> analyzeBatch(lines, firstGame)));
+    }
+
+    /*
+        Waits for a batch to be analyzed, prints it and adds it to the totals.
+     */
+    private void report(Future<Batch> pending) throws IOException {
+        Batch batch;
+        try {
+            batch = pending.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException(e);
+        } catch (ExecutionException e) {
+            throw new IOException(e.getCause());
+        }
+        if (batch.report.length() > 0) {
+            System.out.print(batch.report);
+        }
+        for (int i = 0; i < TOTALS; i++) {
+            totals[i] += batch.totals[i];
+        }
+    }
+
+    /*
+        Analyzes a batch of game log lines.
+     */
+    private Batch analyzeBatch(List<String> lines, int firstGame) {
+        Batch batch = new Batch();
+        for (int i = 0; i < lines.size(); i++) {
+            GameRecord record = GameRecord.parse(lines.get(i));
+            if (record == null || !isLegal(record)) {
+                batch.totals[MALFORMED]++;
+                continue;
+            }
+            batch.totals[GAMES]++;
+            if (record.getWinner() == Mark.BLANK) {
+                continue;
+            }
+            batch.totals[DECISIVE]++;
+            analyzeGame(record, firstGame + i, batch);
+        }
+        return batch;
+    }
+
+    /*
+        Replays a decisive game, looking for the loser's refuted move.
+     */
+    private void analyzeGame(GameRecord record, int gameNumber, Batch batch) {
+        Mark winner = record.getWinner();
+        Mark loser = winner == Mark.X ? Mark.O : Mark.X;
+        String loserName = loser == Mark.X ?
+                record.getPlayer1Type() : record.getPlayer2Type();
+        if (loserType != null && !loserType.equals(loserName)) {
+            return;
+        }
+        Board board = new Board();
+        for (int turn = 0; turn < record.getTurnCount(); turn++) {
+            int cell = record.getCell(turn);
+            if (cell == Board.NO_CELL) {
+                continue;
+            }
+            Board before = new Board(board);
+            board.putMark(record.getMark(turn), cell / Board.SIZE,
+                    cell % Board.SIZE); // legal, see isLegal
+            if (record.getMark(turn) != loser || board.gameEnded()) {
+                continue;
+            }
+            int refutation = findForcedWin(solvers.get(), board, winner,
+                    FORCED_WIN_NODES);
+            if (refutation != Board.NO_CELL) {
+                batch.totals[REFUTED]++;
+                reportRefutation(record, gameNumber, turn, before, loser,
+                        refutation, batch);
+                return;
+            }
+        }
+    }
+
+    /*
+        Re-runs the engine on the position before the refuted move, and adds
+        the refutation to the batch's report.
+     */
+    private void reportRefutation(GameRecord record, int gameNumber, int turn,
+                                  Board before, Mark loser, int refutation,
+                                  Batch batch) {
+        Board position = new Board(before);
+        playerFactory.buildPlayer(engineType).playTurn(position, loser);
+        String suggestion = PASSES;
+        boolean holds = false;
+        if (position.getMarksPlaced() > before.getMarksPlaced()) {
+            suggestion = toCoordinates(position.getLastPlacedCell());
+            Mark winner = loser == Mark.X ? Mark.O : Mark.X;
+            holds = position.getWinner() == loser || (!position.gameEnded()
+                    && findForcedWin(solvers.get(), position, winner,
+                    FORCED_WIN_NODES) == Board.NO_CELL);
+        }
+        if (holds) {
+            batch.totals[ENGINE_HOLDS]++;
+        }
+        batch.report.append(String.format(REFUTED_MSG, gameNumber,
+                record.getPlayer1Type(), record.getPlayer2Type(), loser,
+                toCoordinates(record.getCell(turn)), turn,
+                toCoordinates(refutation), engineType, suggestion,
+                holds ? HOLDS : ALSO_LOSES)).append('\n');
+    }
+
+    /*
+        Checks whether every move of a record is legal: placed on an empty
+        cell, before the game ended.
+     */
+    private static boolean isLegal(GameRecord record) {
+        Board board = new Board();
+        for (int turn = 0; turn < record.getTurnCount(); turn++) {
+            int cell = record.getCell(turn);
+            if (cell == Board.NO_CELL) {
+                continue;
+            }
+            if (board.gameEnded() || !board.putMark(record.getMark(turn),
+                    cell / Board.SIZE, cell % Board.SIZE)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /*
+        Returns the cell in the coordinates format of the human player
+        (row and col, starting at 1).
+     */
+    private static String toCoordinates(int cell) {
+        return (cell / Board.SIZE + 1) + "" + (cell % Board.SIZE + 1);
+    }
+
+    /*
+        The report and the totals of an analyzed batch of games.
+     */
+    private static final class Batch {
+        private final StringBuilder report = new StringBuilder();
+        private final int[] totals = new int[TOTALS];
+    }
+
+    /* ************ MAIN *********** */
+
+    public static void main(String[] args) throws IOException {
+        if (args.length < 2 || args.length > 4 ||
+                args[ENGINE].equals(PlayerFactory.HUMAN) ||
+                new PlayerFactory().buildPlayer(args[ENGINE]) == null) {
+            System.err.println(USAGE_ERR);
+            return;
+        }
+        int threads = args.length > THREADS ? Integer.parseInt(args[THREADS])
+                : Runtime.getRuntime().availableProcessors();
+        String loserType = args.length > LOSER_TYPE ? args[LOSER_TYPE] : null;
+        try (BufferedReader in = new BufferedReader(
+                new FileReader(args[LOG]))) {
+            new ReplayAnalyzer(args[ENGINE], threads, loserType).analyze(in);
+        }
+    }
+}
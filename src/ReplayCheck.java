@@ -0,0 +1,77 @@
+import java.util.Arrays;
+
+/**
+ * Checks that a range of rounds scores the same every time it is played -
+ * which a distributed tournament relies on (see RoundRange) - for every
+ * pairing of the automated player types.
+ * Every range is played twice in the same process: once on a first run over
+ * all the pairings, then again on a second run in the reverse order, so any
+ * state a player keeps across ranges (e.g. a shared table, filled by other
+ * pairings in between) shows up as a mismatch.
+ *
+ * @author Matanel Pataki
+ */
+public class ReplayCheck {
+
+    /* ************ PRIVATE MEMBERS *********** */
+    private static final String USAGE_ERR =
+            "Usage: java ReplayCheck [optional - rounds, seed]";
+    private static final String[] TYPES = {PlayerFactory.WHATEVER,
+            PlayerFactory.CLEVER, PlayerFactory.SNARTYPAMTS,
+            PlayerFactory.NEURAL, PlayerFactory.SOLVER};
+    private static final int DEFAULT_ROUNDS = 20;
+    private static final String MATCH_MSG = "%s vs %s: %s on both runs";
+    private static final String MISMATCH_ERR =
+            "%s vs %s: %s on the first run, %s on the second";
+    private static final String SUMMARY_MSG =
+            "=== %d of %d pairings replayed exactly ===";
+
+    /* ************ MAIN *********** */
+
+    public static void main(String[] args) {
+        if (args.length > 2) {
+            System.err.println(USAGE_ERR);
+            return;
+        }
+        int rounds = args.length > 0 ? Integer.parseInt(args[0]) :
+                DEFAULT_ROUNDS;
+        long seed = args.length > 1 ? Long.parseLong(args[1]) : 0;
+        int pairings = TYPES.length * TYPES.length;
+        int[][] firstRuns = new int[pairings][];
+        for (int i = 0; i < pairings; i++) {
+            firstRuns[i] = rangeOf(i, rounds, seed).play();
+        }
+        int matches = 0;
+        for (int i = pairings - 1; i >= 0; i--) {
+            int[] secondRun = rangeOf(i, rounds, seed).play();
+            String player1 = TYPES[i / TYPES.length];
+            String player2 = TYPES[i % TYPES.length];
+            if (Arrays.equals(firstRuns[i], secondRun)) {
+                matches++;
+                System.out.println(String.format(MATCH_MSG, player1,
+                        player2, Arrays.toString(secondRun)));
+            } else {
+                System.err.println(String.format(MISMATCH_ERR, player1,
+                        player2, Arrays.toString(firstRuns[i]),
+                        Arrays.toString(secondRun)));
+            }
+        }
+        System.out.println(String.format(SUMMARY_MSG, matches, pairings));
+        if (matches < pairings) {
+            System.exit(1);
+        }
+    }
+
+    /* ************ PRIVATE METHODS *********** */
+
+    /*
+        Returns the range of the pairing at the given index: the types of
+        its players are TYPES[index / TYPES.length] and
+        TYPES[index % TYPES.length].
+     */
+    private static RoundRange rangeOf(int index, int rounds, long seed) {
+        return new RoundRange(index, 0, rounds,
+                RoundRange.rangeSeed(seed, index),
+                TYPES[index / TYPES.length], TYPES[index % TYPES.length]);
+    }
+}
@@ -0,0 +1,229 @@
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.util.StringJoiner;
+
+/**
+ * A range of rounds of a tournament, played as a unit of work by a
+ * TournamentWorker on behalf of a TournamentCoordinator.
+ * The players of a range are built from a seed derived from the tournament's
+ * seed and the index of the range, so a range scores the same no matter
+ * which worker plays it, or how many times it is played - as long as the
+ * worker plays with the settings of the coordinator (the system properties
+ * changing how the players play), which a range carries and a worker checks.
+ * Wire format (big endian):
+ *  range - index (int), first round (int), end round (int), seed (long),
+ *          player1 type (UTF), player2 type (UTF), settings (UTF). An index
+ *          of -1 tells the worker there is no more work.
+ *  tally - index (int), player1 winnings, player2 winnings, draws (ints).
+ *          An index of -1 tells the coordinator the worker rejected the
+ *          range, its settings differing.
+ *
+ * @author Matanel Pataki
+ */
+public final class RoundRange {
+
+    /* ************ PUBLIC MEMBERS *********** */
+    public static final int TALLY_SIZE = 3;
+    public static final int REJECTED = -1; // index of a rejected range
+
+    /* ************ PRIVATE MEMBERS *********** */
+    private static final int DONE = -1;
+    private static final String[] SETTINGS = {"board.scalarStreaks",
+            "neural.weights", "snartypamts.parameters",
+            "snartypamts.threatSearch"};
+    private static final String SETTING_FORMAT = "%s=%s";
+    private static final String SETTINGS_SEPARATOR = " ";
+    private static final long GOLDEN_GAMMA = 0x9E3779B97F4A7C15L;
+    private final int index;
+    private final int firstRound;
+    private final int endRound;
+    private final long seed;
+    private final String player1;
+    private final String player2;
+    private final String settings;
+
+    /**
+     * CONSTRUCTOR -
+     * Initializes the range, to be played with the settings of this process.
+     *
+     * @param index      - Index of the range in its tournament.
+     * @param firstRound - The first round of the range.
+     * @param endRound   - The round the range ends before.
+     * @param seed       - The seed of the range's players.
+     * @param player1    - Type of the first player.
+     * @param player2    - Type of the second player.
+     */
+    public RoundRange(int index, int firstRound, int endRound, long seed,
+                      String player1, String player2) {
+        this(index, firstRound, endRound, seed, player1, player2,
+                localSettings());
+    }
+
+    /*
+        Initializes a range to be played with the given settings.
+     */
+    private RoundRange(int index, int firstRound, int endRound, long seed,
+                       String player1, String player2, String settings) {
+        this.index = index;
+        this.firstRound = firstRound;
+        this.endRound = endRound;
+        this.seed = seed;
+        this.player1 = player1;
+        this.player2 = player2;
+        this.settings = settings;
+    }
+
+    /* ************ PUBLIC METHODS *********** */
+
+    /**
+     * @return The index of the range in its tournament.
+     */
+    public int getIndex() {
+        return index;
+    }
+
+    /**
+     * @return The number of rounds of the range.
+     */
+    public int getRounds() {
+        return endRound - firstRound;
+    }
+
+    /**
+     * @return The settings the range is to be played with.
+     */
+    public String getSettings() {
+        return settings;
+    }
+
+    /**
+     * @return Whether this process plays with the settings of the range.
+     */
+    public boolean hasLocalSettings() {
+        return settings.equals(localSettings());
+    }
+
+    /**
+     * @return The settings of this process: the values of the system
+     * properties changing how the players play.
+     */
+    public static String localSettings() {
+        StringJoiner joined = new StringJoiner(SETTINGS_SEPARATOR);
+        for (String key : SETTINGS) {
+            joined.add(String.format(SETTING_FORMAT, key,
+                    System.getProperty(key, "")));
+        }
+        return joined.toString();
+    }
+
+    /**
+     * Plays the rounds of the range, with freshly seeded players.
+     *
+     * @return The scores of the range: player1 winnings, player2 winnings
+     * and draws.
+     */
+    public int[] play() {
+        PlayerFactory playerFactory = new PlayerFactory();
+        Player[] players = {playerFactory.buildPlayer(player1, seed),
+                playerFactory.buildPlayer(player2, mix(seed))};
+        return new Tournament(endRound - firstRound, new VoidRenderer(),
+                players).playRounds(firstRound, endRound);
+    }
+
+    /**
+     * Derives the seed of a range from the seed of its tournament.
+     *
+     * @param tournamentSeed - The seed of the whole tournament.
+     * @param index          - Index of the range.
+     * @return The seed of the range.
+     */
+    public static long rangeSeed(long tournamentSeed, int index) {
+        return mix(tournamentSeed + (index + 1) * GOLDEN_GAMMA);
+    }
+
+    /**
+     * Sends the range to a worker.
+     *
+     * @param out - The stream to the worker.
+     * @throws IOException If the range could not be sent.
+     */
+    public void write(DataOutputStream out) throws IOException {
+        out.writeInt(index);
+        out.writeInt(firstRound);
+        out.writeInt(endRound);
+        out.writeLong(seed);
+        out.writeUTF(player1);
+        out.writeUTF(player2);
+        out.writeUTF(settings);
+        out.flush();
+    }
+
+    /**
+     * Tells a worker there is no more work.
+     *
+     * @param out - The stream to the worker.
+     * @throws IOException If the worker could not be told.
+     */
+    public static void writeDone(DataOutputStream out) throws IOException {
+        out.writeInt(DONE);
+        out.flush();
+    }
+
+    /**
+     * Receives a range from the coordinator.
+     *
+     * @param in - The stream from the coordinator.
+     * @return The range, null if there is no more work.
+     * @throws IOException If the range could not be received.
+     */
+    public static RoundRange read(DataInputStream in) throws IOException {
+        int index = in.readInt();
+        if (index == DONE) {
+            return null;
+        }
+        return new RoundRange(index, in.readInt(), in.readInt(),
+                in.readLong(), in.readUTF(), in.readUTF(), in.readUTF());
+    }
+
+    /**
+     * Sends the scores of a played range back to the coordinator.
+     *
+     * @param out   - The stream to the coordinator.
+     * @param index - Index of the played range.
+     * @param tally - The scores of the range.
+     * @throws IOException If the scores could not be sent.
+     */
+    public static void writeTally(DataOutputStream out, int index,
+                                  int[] tally) throws IOException {
+        out.writeInt(index);
+        for (int i = 0; i < TALLY_SIZE; i++) {
+            out.writeInt(tally[i]);
+        }
+        out.flush();
+    }
+
+    /**
+     * Tells the coordinator the worker rejected a range.
+     *
+     * @param out - The stream to the coordinator.
+     * @throws IOException If the coordinator could not be told.
+     */
+    public static void writeRejected(DataOutputStream out)
+            throws IOException {
+        out.writeInt(REJECTED);
+        out.flush();
+    }
+
+    /* ************ PRIVATE METHODS *********** */
+
+    /*
+        Scrambles the bits of a seed (the SplitMix64 finalizer), so
+        neighbouring ranges get unrelated seeds.
+     */
+    private static long mix(long z) {
+        z = (z ^ (z >>> 30)) * 0xBF58476D1CE4E5B9L;
+        z = (z ^ (z >>> 27)) * 0x94D049BB133111EBL;
+        return z ^ (z >>> 31);
+    }
+}
@@ -0,0 +1,323 @@
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.PriorityBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * A process-wide scheduler of search work, shared by all the games played
+ * at once, so that searching players do not each spin their own threads
+ * and oversubscribe the CPU.
+ * The scheduler runs a fixed number of worker threads. A player submits a
+ * search along with the Deadline of its move; the pending searches are kept
+ * in a single queue ordered by their deadlines, earliest first (searches
+ * without a deadline go last, in submission order), and every idle worker
+ * takes the most urgent one. A search runs with its Deadline set as the
+ * current one of the worker (see Deadline.current), so it polls it as it
+ * would on the game's thread.
+ * A search the caller waits for (see invoke) never waits in the queue: it
+ * is handed to a worker only if one is idle, and otherwise runs on the
+ * caller's thread, which would only block on it. So the only searches that
+ * may wait are those submitted, and searches without a deadline among them
+ * wait for as long as searches with one keep coming. Background searches
+ * (e.g. pondering, see submitBackground) wait behind all of them, whatever
+ * their deadline - the lowest priority band, by design.
+ * The scheduler keeps track of the time searches waited in the queue, to
+ * tell how loaded it is. When profiling, the CPU time and the bytes of
+ * every search are added to the account of the turn that submitted it (see
+ * PlayerProfiler).
+ * The default scheduler has a worker per core, or -Dsearch.threads=[n].
+ *
+ * @author Matanel Pataki
+ */
+public final class SearchScheduler {
+
+    /* ************ PRIVATE MEMBERS *********** */
+    private static final String THREADS_PROPERTY = "search.threads";
+    private static final SearchScheduler DEFAULT = new SearchScheduler(
+            Integer.getInteger(THREADS_PROPERTY,
+                    Runtime.getRuntime().availableProcessors()));
+    private static final String THREAD_NAME = "search-";
+    private static final String STATS_MSG = "%d searches on %d threads" +
+            " (%d on their callers), queue wait: %.3f ms average," +
+            " %.3f ms max";
+    private static final double NANOS_IN_MILLI = 1e6;
+    private static final PlayerProfiler PROFILER = PlayerProfiler.getDefault();
+    private final ThreadPoolExecutor workers;
+    private final int threads;
+    private final AtomicInteger started = new AtomicInteger(); // threads
+    private final AtomicLong submitted = new AtomicLong();
+    private final AtomicInteger busy = new AtomicInteger(); // workers
+    private final LongAdder completed = new LongAdder();
+    private final LongAdder inline = new LongAdder(); // run on the caller
+    private final LongAdder waitNanos = new LongAdder();
+    private final LongAccumulator maxWaitNanos =
+            new LongAccumulator(Math::max, 0);
+
+    /*
+        A pending search, ordered by the deadline of its move.
+     */
+    private final class Search<T> extends FutureTask<T>
+            implements Comparable<Search<?>> {
+        private final Deadline deadline;
+        private final boolean bounded;
+        private final long dueNanos; // System.nanoTime() of the deadline
+        private final long sequence; // submission order, breaking ties
+        private final long submitNanos;
+        private final boolean reserved; // counted as busy when handed over
+        private final boolean background; // runs after all the others
+        // of the turn that submitted the search, null unless profiling:
+        private final PlayerProfiler.Account account;
+
+        Search(Callable<T> search, Deadline deadline, boolean reserved,
+               boolean background) {
+            super(search);
+            this.reserved = reserved;
+            this.background = background;
+            this.account = PROFILER != null ? PlayerProfiler.current() : null;
+            long remaining = deadline.remainingNanos();
+            this.deadline = deadline;
+            this.submitNanos = System.nanoTime();
+            this.bounded = remaining != Long.MAX_VALUE;
+            this.dueNanos = bounded ? submitNanos + remaining : 0;
+            this.sequence = submitted.getAndIncrement();
+        }
+
+        @Override
+        public void run() {
+            if (!reserved) {
+                busy.incrementAndGet();
+            }
+            try {
+                if (isCancelled()) {
+                    return;
+                }
+                long waited = System.nanoTime() - submitNanos;
+                waitNanos.add(waited);
+                maxWaitNanos.accumulate(waited);
+                Deadline.setCurrent(deadline);
+                try {
+                    if (account != null) {
+                        runAccounted();
+                    } else {
+                        super.run();
+                    }
+                } finally {
+                    Deadline.setCurrent(Deadline.NONE);
+                    completed.increment();
+                }
+            } finally {
+                busy.decrementAndGet();
+            }
+        }
+
+        /*
+            Runs the search, adding the CPU time and the bytes of the
+            worker to the account of its turn (and of the searches it
+            submits).
+         */
+        private void runAccounted() {
+            long cpu = PROFILER.threadCpuNanos();
+            long allocated = PROFILER.threadAllocatedBytes();
+            PlayerProfiler.setCurrent(account);
+            try {
+                super.run();
+            } finally {
+                PlayerProfiler.setCurrent(null);
+                account.addOffloaded(PROFILER.threadCpuNanos() - cpu,
+                        PROFILER.threadAllocatedBytes() - allocated);
+            }
+        }
+
+        @Override
+        public int compareTo(Search<?> other) {
+            if (background != other.background) {
+                return background ? 1 : -1; // in submission order
+            }
+            if (!background && bounded != other.bounded) {
+                return bounded ? -1 : 1;
+            }
+            if (!background && bounded && dueNanos != other.dueNanos) {
+                return dueNanos - other.dueNanos < 0 ? -1 : 1;
+            }
+            return Long.compare(sequence, other.sequence);
+        }
+    }
+
+    /**
+     * CONSTRUCTOR -
+     * Initializes a scheduler, with its worker threads (daemons, so an idle
+     * scheduler never keeps the process alive).
+     *
+     * @param threads - Number of worker threads.
+     */
+    public SearchScheduler(int threads) {
+        this.threads = Math.max(1, threads);
+        this.workers = new ThreadPoolExecutor(this.threads, this.threads, 0,
+                TimeUnit.SECONDS, new PriorityBlockingQueue<>(),
+                runnable -> {
+                    Thread thread = new Thread(runnable,
+                            THREAD_NAME + started.getAndIncrement());
+                    thread.setDaemon(true);
+                    return thread;
+                });
+        this.workers.prestartAllCoreThreads();
+    }
+
+    /* ************ PUBLIC METHODS *********** */
+
+    /**
+     * @return The scheduler shared by the whole process.
+     */
+    public static SearchScheduler getDefault() {
+        return DEFAULT;
+    }
+
+    /**
+     * Queues a search.
+     *
+     * @param deadline - The deadline of the move the search is for.
+     * @param search   - The search to run.
+     * @param <T>      - The type of the search's result.
+     * @return The pending result of the search.
+     */
+    public <T> Future<T> submit(Deadline deadline, Callable<T> search) {
+        Search<T> task = new Search<>(search, deadline, false, false);
+        workers.execute(task);
+        return task;
+    }
+
+    /**
+     * Queues a search behind all the others, whatever its deadline (e.g.
+     * a ponder, which only uses the time no move needs).
+     *
+     * @param deadline - The deadline the search runs with.
+     * @param search   - The search to run.
+     * @param <T>      - The type of the search's result.
+     * @return The pending result of the search.
+     */
+    public <T> Future<T> submitBackground(Deadline deadline,
+                                          Callable<T> search) {
+        Search<T> task = new Search<>(search, deadline, false, true);
+        workers.execute(task);
+        return task;
+    }
+
+    /**
+     * Runs a search for the move played on the current thread (with its
+     * Deadline) and waits for its result: on an idle worker of the
+     * scheduler if there is one, on the current thread otherwise, so it
+     * never waits in the queue.
+     *
+     * @param search - The search to run.
+     * @param <T>    - The type of the search's result.
+     * @return The result of the search, null if the current thread was
+     * interrupted while waiting for it.
+     * @throws IllegalStateException If the search has failed.
+     */
+    public <T> T invoke(Callable<T> search) {
+        if (!reserveWorker()) {
+            return runInline(search);
+        }
+        Search<T> result = new Search<>(search, Deadline.current(), true,
+                false);
+        workers.execute(result);
+        try {
+            return result.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            result.cancel(false);
+            return null;
+        } catch (ExecutionException e) {
+            throw new IllegalStateException(e.getCause());
+        }
+    }
+
+    /**
+     * @return The number of worker threads.
+     */
+    public int getThreads() {
+        return threads;
+    }
+
+    /**
+     * @return The number of searches run so far.
+     */
+    public long getCompleted() {
+        return completed.sum();
+    }
+
+    /**
+     * @return The number of searches run on the threads that invoked them,
+     * as no worker was idle.
+     */
+    public long getInline() {
+        return inline.sum();
+    }
+
+    /**
+     * @return The longest time a search waited in the queue, in nanoseconds.
+     */
+    public long getMaxWaitNanos() {
+        return maxWaitNanos.get();
+    }
+
+    /**
+     * @return The average time a search waited in the queue, in
+     * nanoseconds.
+     */
+    public double getAverageWaitNanos() {
+        long searches = completed.sum();
+        return searches == 0 ? 0 : waitNanos.sum() / (double) searches;
+    }
+
+    /**
+     * @return A line summarizing the searches run so far.
+     */
+    @Override
+    public String toString() {
+        return String.format(STATS_MSG, getCompleted(), threads,
+                getInline(), getAverageWaitNanos() / NANOS_IN_MILLI,
+                getMaxWaitNanos() / NANOS_IN_MILLI);
+    }
+
+    /* ************ PRIVATE METHODS *********** */
+
+    /*
+        Counts an idle worker as busy, if there is one and no search is
+        queued for it.
+        Returns true if a worker was reserved, false otherwise.
+     */
+    private boolean reserveWorker() {
+        int count;
+        do {
+            count = busy.get();
+            if (count >= threads || !workers.getQueue().isEmpty()) {
+                return false;
+            }
+        } while (!busy.compareAndSet(count, count + 1));
+        return true;
+    }
+
+    /*
+        Runs a search on the current thread, whose Deadline is already the
+        search's.
+        Returns the result of the search.
+     */
+    private <T> T runInline(Callable<T> search) {
+        inline.increment();
+        try {
+            return search.call();
+        } catch (Exception e) {
+            throw new IllegalStateException(e);
+        } finally {
+            completed.increment();
+        }
+    }
+}
@@ -5,7 +5,16 @@ import java.util.Random;
  * This player is determined to keep on placing it mark in a certain direction.
  * By Doing that, it is able to make streaks faster than in random placements.
  * Also, this player is able to block incoming win streaks of the opponent in
- * some situation.
+ * some situation. With -Dsnartypamts.threatSearch=true, it also plays forced
+ * wins of continuous threats (see ThreatSearch).
+ * When stuck, the player turns to the heaviest open direction; the weights
+ * are parameters (see defaultParameters), ordering the directions D, R, U,
+ * L, DR, UL, DL, UR by default. A player given parameters - tuned ones,
+ * loaded with -Dsnartypamts.parameters="name=value,name=value", or
+ * perturbed ones, by the tuner (see SpsaTuner) - draws an open direction by
+ * weight instead (the chance of a direction grows exponentially with its
+ * weight, so the heaviest one is the most likely, and the expected strength
+ * of the player changes smoothly with the weights).
  * This player is tailored to win over the clever player (and by result the
  * random player as well) by knowing its mechanic (which he uses as well).
  *
@@ -18,9 +27,130 @@ public class SnartypamtsPlayer implements Player {
     private final int[] lastPlacedLocation =
             new int[]{random.nextInt(Board.SIZE), random.nextInt(Board.SIZE)};
     private Direction currentDirection = Direction.U;
+    private final int[] newMarkLocation = new int[2];
+    // reused by getLocation, so sweeping the board allocates nothing:
+    private final int[][] optionalLocation = new int[8][2];
+    private final int[][] streaks = new int[8][3];
+    private static final int[] NO_LOCATION = new int[]{-1, -1};
+    private static final long THREAT_NODES = 2_000;
+    private static final boolean THREAT_SEARCH =
+            Boolean.getBoolean("snartypamts.threatSearch");
+    // null unless searching for threats:
+    private final ThreatSearch threatSearch =
+            THREAT_SEARCH ? new ThreatSearch() : null;
+    // exp(SHARPNESS * weight) of every direction, by Direction.ordinal():
+    private final double[] preferences = new double[DIRECTIONS.length];
+    private final double[] openPreferences = new double[DIRECTIONS.length];
+    private final boolean drawsDirections; // else turns to the heaviest
+    private static final Direction[] DIRECTIONS = Direction.values();
+    private static final String WEIGHT_PREFIX = "direction.";
+    private static final String PARAMETERS_PROPERTY = "snartypamts.parameters";
+    // a weight heavier by 1 makes a direction e^SHARPNESS times as likely:
+    private static final double SHARPNESS = 2;
+    private static final Direction[] DEFAULT_ORDER = {Direction.D,
+            Direction.R, Direction.U, Direction.L, Direction.DR, Direction.UL,
+            Direction.DL, Direction.UR};
+    // cell steps of the directions, by Direction.ordinal():
+    private static final int[] ROW_DELTAS = {-1, 0, 1, 0, -1, -1, 1, 1};
+    private static final int[] COL_DELTAS = {0, 1, 0, -1, 1, -1, 1, -1};
+    private static final double MAX_WEIGHT = 10;
+    private static final double WEIGHT_STEP = 1;
+
+    /**
+     * CONSTRUCTOR -
+     * Initializes a player with a random seed, and the parameters of
+     * loadedParameters; it draws its directions only if parameters were
+     * loaded.
+     */
+    public SnartypamtsPlayer() {
+        this.drawsDirections = System.getProperty(PARAMETERS_PROPERTY) != null;
+        setPreferences(loadedParameters());
+    }
+
+    /**
+     * CONSTRUCTOR -
+     * Initializes a player whose choices are reproducible from the seed,
+     * with the parameters of loadedParameters; it draws its directions only
+     * if parameters were loaded.
+     *
+     * @param seed - The seed of the player's random choices.
+     */
+    public SnartypamtsPlayer(long seed) {
+        this(seed, loadedParameters(),
+                System.getProperty(PARAMETERS_PROPERTY) != null);
+    }
+
+    /**
+     * CONSTRUCTOR -
+     * Initializes a player with a random seed and the given parameters,
+     * drawing its directions by them.
+     *
+     * @param parameters - The parameters of the player, as defined by
+     *                   defaultParameters.
+     */
+    public SnartypamtsPlayer(ParameterSet parameters) {
+        this.drawsDirections = true;
+        setPreferences(parameters);
+    }
+
+    /**
+     * CONSTRUCTOR -
+     * Initializes a player whose choices are reproducible from the seed,
+     * with the given parameters, drawing its directions by them.
+     *
+     * @param seed       - The seed of the player's random choices.
+     * @param parameters - The parameters of the player, as defined by
+     *                   defaultParameters.
+     */
+    public SnartypamtsPlayer(long seed, ParameterSet parameters) {
+        this(seed, parameters, true);
+    }
+
+    /*
+        Initializes a player whose choices are reproducible from the seed,
+        drawing its directions by the given parameters, or turning to the
+        heaviest.
+     */
+    private SnartypamtsPlayer(long seed, ParameterSet parameters,
+                              boolean drawsDirections) {
+        this.drawsDirections = drawsDirections;
+        setPreferences(parameters);
+        random.setSeed(seed);
+        newGame();
+    }
 
     /* ************ PUBLIC METHODS *********** */
 
+    /**
+     * @return The parameters of the player, at their defaults: a weight per
+     * direction ("direction.D" etc.), ordered D, R, U, L, DR, UL, DL, UR
+     * from the highest.
+     */
+    public static ParameterSet defaultParameters() {
+        ParameterSet parameters = new ParameterSet();
+        for (int i = 0; i < DEFAULT_ORDER.length; i++) {
+            parameters.defineReal(WEIGHT_PREFIX + DEFAULT_ORDER[i].name(),
+                    DEFAULT_ORDER.length - i, 0, MAX_WEIGHT, WEIGHT_STEP);
+        }
+        return parameters;
+    }
+
+    /**
+     * @return The parameters the players built without any are given: those
+     * of -Dsnartypamts.parameters="name=value,name=value" (e.g. as printed
+     * by SpsaTuner), and the defaults for the parameters it does not name.
+     * @throws IllegalArgumentException If the property names an unknown
+     *                                  parameter, or is malformed.
+     */
+    public static ParameterSet loadedParameters() {
+        ParameterSet parameters = defaultParameters();
+        String text = System.getProperty(PARAMETERS_PROPERTY);
+        if (text != null) {
+            parameters.parse(text);
+        }
+        return parameters;
+    }
+
     /**
      * Given a board and a mark, this function places (if able) the mark
      * at the best location it deems.
@@ -30,11 +160,22 @@ public class SnartypamtsPlayer implements Player {
      */
     public void playTurn(Board board, Mark mark) {
         if (!couldWinRightNow(board, mark) &&
-                !StoppedOpponentFromWinning(board, mark)) {
+                !StoppedOpponentFromWinning(board, mark) &&
+                !playedForcedWin(board, mark)) {
             placeNewMark(board, mark);
         }
     }
 
+    /**
+     * Starts a new game from a random location, in the initial direction.
+     */
+    @Override
+    public void newGame() {
+        lastPlacedLocation[0] = random.nextInt(Board.SIZE);
+        lastPlacedLocation[1] = random.nextInt(Board.SIZE);
+        currentDirection = Direction.U;
+    }
+
     /* ************ PRIVATE METHODS *********** */
 
     /*
@@ -43,6 +184,9 @@ public class SnartypamtsPlayer implements Player {
         Return true if able to place the winning mark, false otherwise.
      */
     private boolean couldWinRightNow(Board brd, Mark mark) {
+        if (brd.getWinningCells(mark) == 0) {
+            return false; // no winning cell, no need to sweep the board
+        }
         for (int row = 0; row < Board.SIZE; row++) {
             for (int col = 0; col < Board.SIZE; col++) {
                 int[] winLocation = getLocation(brd, mark, row, col);
@@ -55,6 +199,25 @@ public class SnartypamtsPlayer implements Player {
         return false;
     }
 
+    /*
+        Searching for a forced win of continuous threats, within a small
+        node budget, if the player searches for threats.
+        Return true if able to place the first mark of the win, false
+        otherwise.
+     */
+    private boolean playedForcedWin(Board brd, Mark mark) {
+        if (threatSearch == null) {
+            return false;
+        }
+        int cell = threatSearch.findForcedWin(brd, mark, THREAT_NODES);
+        if (cell == Board.NO_CELL) {
+            return false;
+        }
+        lastPlacedLocation[0] = cell / Board.SIZE;
+        lastPlacedLocation[1] = cell % Board.SIZE;
+        return brd.putMark(mark, lastPlacedLocation[0], lastPlacedLocation[1]);
+    }
+
     /*
         This function is being called if the was no need to block an opponent
         winning streak, and there was no possible placement to place a winning
@@ -64,8 +227,8 @@ public class SnartypamtsPlayer implements Player {
         player, therefore building potential winning streak.
      */
     private void placeNewMark(Board board, Mark mark) {
-        int[] newMarkLocation =
-                new int[]{lastPlacedLocation[0], lastPlacedLocation[1]};
+        newMarkLocation[0] = lastPlacedLocation[0];
+        newMarkLocation[1] = lastPlacedLocation[1];
         keepOnCurrentDirection(newMarkLocation);
         while (!board.putMark(mark, newMarkLocation[0], newMarkLocation[1])) {
             findNewDirection(board);
@@ -84,6 +247,9 @@ public class SnartypamtsPlayer implements Player {
      */
     private boolean StoppedOpponentFromWinning(Board brd, Mark mark) {
         Mark opponentMark = getOpponentMark(mark);
+        if (brd.getWinningCells(opponentMark) == 0) {
+            return false; // no winning cell to block
+        }
         for (int row = 0; row < Board.SIZE; row++) {
             for (int col = 0; col < Board.SIZE; col++) {
                 int[] blockLocation = getLocation(brd, opponentMark, row, col);
@@ -104,16 +270,15 @@ public class SnartypamtsPlayer implements Player {
         in the winning of that mark, than returns it.
      */
     private int[] getLocation(Board board, Mark mark, int row, int col) {
-        int[][] optionalLocation = new int[8][2];
         // counting streak in all directions:
-        int[] L = countMarks(board, row, col, 0, -1, mark);
-        int[] R = countMarks(board, row, col, 0, 1, mark);
-        int[] U = countMarks(board, row, col, -1, 0, mark);
-        int[] D = countMarks(board, row, col, 1, 0, mark);
-        int[] UR = countMarks(board, row, col, -1, 1, mark);
-        int[] DL = countMarks(board, row, col, 1, -1, mark);
-        int[] DR = countMarks(board, row, col, 1, 1, mark);
-        int[] UL = countMarks(board, row, col, -1, -1, mark);
+        int[] L = countMarks(board, row, col, 0, -1, mark, streaks[0]);
+        int[] R = countMarks(board, row, col, 0, 1, mark, streaks[1]);
+        int[] U = countMarks(board, row, col, -1, 0, mark, streaks[2]);
+        int[] D = countMarks(board, row, col, 1, 0, mark, streaks[3]);
+        int[] UR = countMarks(board, row, col, -1, 1, mark, streaks[4]);
+        int[] DL = countMarks(board, row, col, 1, -1, mark, streaks[5]);
+        int[] DR = countMarks(board, row, col, 1, 1, mark, streaks[6]);
+        int[] UL = countMarks(board, row, col, -1, -1, mark, streaks[7]);
         // collect all possibles coordinates:
         getOptionalLocations(optionalLocation, L, R, U, D, UR, DL, DR, UL);
         // horizontal and vertical streaks:
@@ -136,7 +301,7 @@ public class SnartypamtsPlayer implements Player {
             }
         }
         // if got here, no valid location has found. return indicator:
-        return new int[]{-1, -1};
+        return NO_LOCATION;
     }
 
     /*
@@ -207,9 +372,12 @@ public class SnartypamtsPlayer implements Player {
     /*
     Counts how many marks are on the streak in a given direction.
     The direction is being represented by rowDelta and colDelta.
+    The count and the blank location ending the streak (if any) are written
+    to the given streak array, which is returned.
     */
     private int[] countMarks(Board board, int row, int col,
-                             int rowDelta, int colDelta, Mark mark) {
+                             int rowDelta, int colDelta, Mark mark,
+                             int[] streak) {
         int count = 0;
         while (row < Board.SIZE && row >= 0 && col < Board.SIZE && col >= 0 &&
                 board.getMark(row, col) == mark) {
@@ -217,11 +385,16 @@ public class SnartypamtsPlayer implements Player {
             row += rowDelta;
             col += colDelta;
         }
+        streak[0] = count;
         if (validCoordinates(row, col) &&
                 board.getMark(row, col) == Mark.BLANK) {
-            return new int[]{count, row, col};
+            streak[1] = row;
+            streak[2] = col;
+        } else {
+            streak[1] = -1;
+            streak[2] = -1;
         }
-        return new int[]{count, -1, -1};
+        return streak;
     }
 
     /*
@@ -242,87 +415,50 @@ public class SnartypamtsPlayer implements Player {
         the current direction.
      */
     private void keepOnCurrentDirection(int[] newMarkLocation) {
-        switch (currentDirection) {
-            case U:
-                newMarkLocation[0] = lastPlacedLocation[0] - 1;
-                newMarkLocation[1] = lastPlacedLocation[1];
-                break;
-            case R:
-                newMarkLocation[0] = lastPlacedLocation[0];
-                newMarkLocation[1] = lastPlacedLocation[1] + 1;
-                break;
-            case D:
-                newMarkLocation[0] = lastPlacedLocation[0] + 1;
-                newMarkLocation[1] = lastPlacedLocation[1];
-                break;
-            case L:
-                newMarkLocation[0] = lastPlacedLocation[0];
-                newMarkLocation[1] = lastPlacedLocation[1] - 1;
-                break;
-            case UR:
-                newMarkLocation[0] = lastPlacedLocation[0] - 1;
-                newMarkLocation[1] = lastPlacedLocation[1] + 1;
-                break;
-            case UL:
-                newMarkLocation[0] = lastPlacedLocation[0] - 1;
-                newMarkLocation[1] = lastPlacedLocation[1] - 1;
-                break;
-            case DR:
-                newMarkLocation[0] = lastPlacedLocation[0] + 1;
-                newMarkLocation[1] = lastPlacedLocation[1] + 1;
-                break;
-            case DL:
-                newMarkLocation[0] = lastPlacedLocation[0] + 1;
-                newMarkLocation[1] = lastPlacedLocation[1] - 1;
-                break;
-        }
+        newMarkLocation[0] = lastPlacedLocation[0] +
+                ROW_DELTAS[currentDirection.ordinal()];
+        newMarkLocation[1] = lastPlacedLocation[1] +
+                COL_DELTAS[currentDirection.ordinal()];
     }
 
     /*
         Finds new direction to placed marks in according to vacancy on the
-        board. A useful function in case the player gets "stuck".
+        board: the open direction of the highest preference, or one drawn by
+        their preferences.
+        A useful function in case the player gets "stuck".
     */
     private void findNewDirection(Board board) {
-        int row = lastPlacedLocation[0];
-        int col = lastPlacedLocation[1];
-        if (validCoordinates(row + 1, col) &&
-                board.getMark(row + 1, col) == Mark.BLANK) {
-            currentDirection = Direction.D;
-            return;
-        }
-        if (validCoordinates(row, col + 1) &&
-                board.getMark(row, col + 1) == Mark.BLANK) {
-            currentDirection = Direction.R;
-            return;
+        double total = 0;
+        for (Direction direction : DIRECTIONS) {
+            int row = lastPlacedLocation[0] + ROW_DELTAS[direction.ordinal()];
+            int col = lastPlacedLocation[1] + COL_DELTAS[direction.ordinal()];
+            boolean open = validCoordinates(row, col) &&
+                    board.getMark(row, col) == Mark.BLANK;
+            openPreferences[direction.ordinal()] =
+                    open ? preferences[direction.ordinal()] : 0;
+            total += openPreferences[direction.ordinal()];
         }
-        if (validCoordinates(row - 1, col) &&
-                board.getMark(row - 1, col) == Mark.BLANK) {
-            currentDirection = Direction.U;
-            return;
-        }
-        if (validCoordinates(row, col - 1) &&
-                board.getMark(row, col - 1) == Mark.BLANK) {
-            currentDirection = Direction.L;
-            return;
-        }
-        if (validCoordinates(row + 1, col + 1) &&
-                board.getMark(row + 1, col + 1) == Mark.BLANK) {
-            currentDirection = Direction.DR;
-            return;
-        }
-        if (validCoordinates(row - 1, col - 1) &&
-                board.getMark(row - 1, col - 1) == Mark.BLANK) {
-            currentDirection = Direction.UL;
-            return;
-        }
-        if (validCoordinates(row + 1, col - 1) &&
-                board.getMark(row + 1, col - 1) == Mark.BLANK) {
-            currentDirection = Direction.DL;
+        if (total > 0 && !drawsDirections) {
+            double highest = 0;
+            for (Direction direction : DIRECTIONS) {
+                if (openPreferences[direction.ordinal()] > highest) {
+                    highest = openPreferences[direction.ordinal()];
+                    currentDirection = direction;
+                }
+            }
             return;
         }
-        if (validCoordinates(row - 1, col + 1) &&
-                board.getMark(row - 1, col + 1) == Mark.BLANK) {
-            currentDirection = Direction.UR;
+        if (total > 0) {
+            double drawn = random.nextDouble() * total;
+            for (Direction direction : DIRECTIONS) {
+                if (openPreferences[direction.ordinal()] > 0) {
+                    currentDirection = direction; // the last open, if rounded
+                    drawn -= openPreferences[direction.ordinal()];
+                    if (drawn < 0) {
+                        return;
+                    }
+                }
+            }
             return;
         }
         // if got here, there is no open direction to go in, there for,
@@ -331,6 +467,17 @@ public class SnartypamtsPlayer implements Player {
         lastPlacedLocation[1] = random.nextInt(Board.SIZE);
     }
 
+    /*
+        Sets the preference of every direction, exp(SHARPNESS * weight), by
+        the weights of the given parameters.
+     */
+    private void setPreferences(ParameterSet parameters) {
+        for (Direction direction : DIRECTIONS) {
+            preferences[direction.ordinal()] = Math.exp(SHARPNESS *
+                    parameters.get(WEIGHT_PREFIX + direction.name()));
+        }
+    }
+
     /*
         Checks whether the given coordinates are in the board dimensions.
     */
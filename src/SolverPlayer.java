@@ -0,0 +1,172 @@
+import java.io.IOException;
+
+/**
+ * Represents a Player that plays proven optimal moves (see ProofSolver).
+ * On every turn, the player tries to solve the position within a node
+ * budget (and within the Deadline of the move, in timed games). If the
+ * position is proven won, it plays a winning move; if it is proven drawn,
+ * a move keeping the draw. Otherwise (a position too deep to prove in
+ * time, or a lost one) it plays as the 'snartypamts' player does.
+ * The solver's table (off the heap) is kept between turns and games, and is
+ * shared by all the solver players of the process, so later proofs reuse
+ * the work of earlier ones. Running with -Dsolver.table=[file] maps the
+ * table to a file, so the proofs are kept across runs as well. A seeded
+ * player (see PlayerFactory) has a fresh table of its own instead, and does
+ * not ponder, so its games replay exactly whatever was played before them.
+ * The proofs run on the shared SearchScheduler, so many games played at
+ * once share its fixed threads.
+ * With -Dsearch.ponder=true the player ponders (see Ponderer) during its
+ * opponent's turn: it predicts the reply - an immediate win or block, else
+ * a proven move of the opponent, else the move of a 'snartypamts' player -
+ * and proves the position after it into the shared table, for at most the
+ * opponent's move time. On a hit, the pondering proof goes on as the proof
+ * of its move (within its own move time), or its proof resumes from the
+ * pondered work.
+ *
+ * @author Matanel Pataki
+ */
+public class SolverPlayer implements Player {
+
+    /* ************ PRIVATE MEMBERS *********** */
+    private static final int TABLE_MEGABYTES = 16;
+    private static final String TABLE_PROPERTY = "solver.table";
+    private static final String TABLE_ERR = "Cannot map the table file %s: %s";
+    private static final long MOVE_NODES = 20_000;
+    private static final long PREDICT_NODES = 2_000;
+    private static final long PONDER_NODES = 200_000;
+    private static final long PREDICTOR_SEED = 0;
+    private static ProofTable sharedTable; // of all the solver players
+    private final ProofSolver solver;
+    private final SnartypamtsPlayer fallback;
+    private final Ponderer ponderer; // null unless pondering
+    private final ProofSolver ponderSolver; // null unless pondering
+    // plays the opponent's reply when no proof does, null unless pondering:
+    private final SnartypamtsPlayer predictor;
+
+    /**
+     * CONSTRUCTOR -
+     * Initializes a player with a random seed, sharing the table of the
+     * process.
+     */
+    public SolverPlayer() {
+        this(sharedTable(), new SnartypamtsPlayer(), Ponderer.isEnabled());
+    }
+
+    /**
+     * CONSTRUCTOR -
+     * Initializes a player whose choices are reproducible from the seed,
+     * with a fresh table of its own.
+     *
+     * @param seed - The seed of the player's random choices.
+     */
+    public SolverPlayer(long seed) {
+        this(new ProofTable(new OffHeapTable(TABLE_MEGABYTES)),
+                new SnartypamtsPlayer(seed), false);
+    }
+
+    /*
+        Initializes a player proving into the given table.
+     */
+    private SolverPlayer(ProofTable table, SnartypamtsPlayer fallback,
+                         boolean ponder) {
+        this.solver = new ProofSolver(table, 1);
+        this.fallback = fallback;
+        this.ponderer = ponder ? new Ponderer() : null;
+        this.ponderSolver = ponder ? new ProofSolver(table, 1) : null;
+        this.predictor = ponder ? new SnartypamtsPlayer(PREDICTOR_SEED) : null;
+    }
+
+    /* ************ PUBLIC METHODS *********** */
+
+    /**
+     * Given a board and a mark, this function places the mark in a proven
+     * optimal cell if there is one, as the fallback player would otherwise.
+     * When pondering, the move pondered on a hit is played once its search
+     * ends (within the move's time), and the player starts pondering on the
+     * opponent's reply once it has moved.
+     *
+     * @param board - The board to place the mark in.
+     * @param mark  - The type of mark to be placed.
+     */
+    @Override
+    public void playTurn(Board board, Mark mark) {
+        // the opponent replies on the same clocks:
+        long opponentNanos = Deadline.current().remainingNanos();
+        Integer cell = ponderer != null ? ponderer.stop(board) : null;
+        if (cell == null || cell == Board.NO_CELL) {
+            cell = SearchScheduler.getDefault().invoke(() ->
+                    solver.findBestMove(board, mark, MOVE_NODES));
+        }
+        if (cell == null || cell == Board.NO_CELL ||
+                !board.putMark(mark, cell / Board.SIZE, cell % Board.SIZE)) {
+            fallback.playTurn(board, mark);
+        }
+        if (ponderer != null) {
+            ponderer.start(board, mark == Mark.X ? Mark.O : Mark.X,
+                    opponentNanos, this::predictReply, position ->
+                            ponderSolver.findBestMove(position, mark,
+                                    PONDER_NODES));
+        }
+    }
+
+    /**
+     * Starts a new game (the solver's table is kept), dropping any
+     * pondering left over from the previous one.
+     */
+    @Override
+    public void newGame() {
+        fallback.newGame();
+        if (ponderer != null) {
+            ponderer.discard();
+            predictor.newGame();
+        }
+    }
+
+    /* ************ PRIVATE METHODS *********** */
+
+    /*
+        Plays the opponent's most likely reply, while pondering: an
+        immediate win, else a block of the player's immediate win, else a
+        proven move, else the move of a 'snartypamts' player.
+     */
+    private void predictReply(Board board, Mark opponent) {
+        long forced = board.getWinningCells(opponent);
+        if (forced == 0) {
+            forced = board.getWinningCells(
+                    opponent == Mark.X ? Mark.O : Mark.X);
+        }
+        int cell = forced != 0 ? Long.numberOfTrailingZeros(forced) :
+                ponderSolver.findBestMove(board, opponent, PREDICT_NODES);
+        if (cell == Board.NO_CELL ||
+                !board.putMark(opponent, cell / Board.SIZE,
+                        cell % Board.SIZE)) {
+            predictor.playTurn(board, opponent);
+        }
+    }
+
+    /*
+        Returns the table shared by all the solver players, creating it
+        (or mapping it to its file, which is then written out as the process
+        exits) on first use.
+     */
+    private static synchronized ProofTable sharedTable() {
+        if (sharedTable == null) {
+            String path = System.getProperty(TABLE_PROPERTY);
+            OffHeapTable entries = null;
+            if (path != null) {
+                try {
+                    entries = OffHeapTable.map(path, TABLE_MEGABYTES,
+                            ProofTable.FORMAT);
+                    Runtime.getRuntime().addShutdownHook(
+                            new Thread(entries::flush));
+                } catch (IOException e) {
+                    System.err.println(String.format(TABLE_ERR, path,
+                            e.getMessage()));
+                }
+            }
+            sharedTable = new ProofTable(entries != null ? entries :
+                    new OffHeapTable(TABLE_MEGABYTES));
+        }
+        return sharedTable;
+    }
+}
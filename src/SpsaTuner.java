@@ -0,0 +1,360 @@
+import java.io.BufferedReader;
+import java.io.FileReader;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.function.BiFunction;
+
+/**
+ * Tunes the parameters of a player (see ParameterSet) by SPSA -
+ * simultaneous perturbation stochastic approximation - driven by self-play.
+ * Every iteration perturbs all the parameters at once, by a random sign
+ * each, in both directions, and plays the two perturbed players against
+ * each other; the score of the match estimates the gradient of the
+ * strength along the perturbation, and the parameters move along it by a
+ * gain shrinking with the iterations.
+ * The games of an iteration are split into chunks played in parallel on a
+ * worker pool. The perturbations and the players of every chunk are seeded
+ * from the tuner's seed and the iteration (see RoundRange.rangeSeed), so a
+ * run is reproducible no matter the number of threads.
+ * The progress is checkpointed after every iteration, so a stopped run
+ * resumes where it stopped. Every iteration reports the match score and
+ * how far the parameters moved; once the moves stay small, the run is
+ * reported as converged.
+ *
+ * @author Matanel Pataki
+ */
+public class SpsaTuner {
+
+    /* ************ PRIVATE MEMBERS *********** */
+    private static final String USAGE_ERR = "Usage: java SpsaTuner" +
+            " [iterations] [games per iteration]" +
+            " [optional - threads] [optional - seed]" +
+            " [optional - checkpoint file]";
+    private static final String CHECKPOINT_ERR =
+            "Checkpoint %s is of another run, or malformed";
+    private static final String RESUMED_MSG = "Resumed at iteration %d: %s";
+    private static final String ITERATION_MSG = "iteration %d: score %+.3f" +
+            " (%d-%d-%d), moved %.3f steps, %s";
+    private static final String CONVERGED_MSG =
+            "converged: moved %.3f steps per iteration over the last %d";
+    private static final String FINAL_MSG = "tuned parameters: %s";
+    private static final String MATCH_MSG = "tuned vs defaults (%d games):" +
+            " %d-%d-%d, score %+.3f";
+    private static final String SEED_KEY = "seed";
+    private static final String ITERATION_KEY = "iteration";
+    private static final String PARAMETERS_KEY = "parameters";
+    private static final String TEMP_SUFFIX = ".tmp";
+    private static final int CHUNK_GAMES = 100; // games of a parallel task
+    // gains: a / (k + 1 + A) ^ ALPHA for moves, c / (k + 1) ^ GAMMA for
+    // perturbations (in steps), where A is STABILITY of the iterations:
+    private static final double MOVE_GAIN = 20;
+    private static final double PERTURBATION_GAIN = 1;
+    private static final double ALPHA = 0.602;
+    private static final double GAMMA = 0.101;
+    private static final double STABILITY = 0.1;
+    private static final int CONVERGENCE_WINDOW = 10;
+    private static final double CONVERGED_STEPS = 0.05;
+    private static final long DEFAULT_SEED = 0;
+    private static final int ITERATIONS = 0;
+    private static final int GAMES = 1;
+    private static final int THREADS = 2;
+    private static final int SEED = 3;
+    private static final int CHECKPOINT = 4;
+    private final BiFunction<Long, ParameterSet, Player> builder;
+    private final ParameterSet defaults;
+    private final int gamesPerIteration;
+    private final int threads;
+    private final long seed;
+    private ParameterSet parameters;
+    private int iteration; // iterations done so far
+
+    /**
+     * CONSTRUCTOR -
+     * Initializes a tuner, at the given parameters.
+     *
+     * @param builder           - Builds a player from a seed and parameters.
+     * @param parameters        - The parameters to start tuning from.
+     * @param gamesPerIteration - Games played between the two perturbed
+     *                          players in every iteration.
+     * @param threads           - Size of the worker pool.
+     * @param seed              - The seed of the whole run.
+     */
+    public SpsaTuner(BiFunction<Long, ParameterSet, Player> builder,
+                     ParameterSet parameters, int gamesPerIteration,
+                     int threads, long seed) {
+        this.builder = builder;
+        this.defaults = parameters.copy();
+        this.parameters = parameters.copy();
+        this.gamesPerIteration = gamesPerIteration;
+        this.threads = threads;
+        this.seed = seed;
+    }
+
+    /* ************ PUBLIC METHODS *********** */
+
+    /**
+     * Runs the given total of iterations (counting those already done),
+     * checkpointing after every one of them if a checkpoint file is given.
+     *
+     * @param iterations - Total number of iterations.
+     * @param checkpoint - The checkpoint file, null for none.
+     * @return The tuned parameters.
+     * @throws InterruptedException If interrupted while waiting for games.
+     * @throws ExecutionException   If a game has failed.
+     * @throws IOException          If the checkpoint could not be written.
+     */
+    public ParameterSet run(int iterations, String checkpoint)
+            throws InterruptedException, ExecutionException, IOException {
+        ExecutorService pool = Executors.newFixedThreadPool(threads);
+        double[] moves = new double[CONVERGENCE_WINDOW];
+        try {
+            for (int done = 0; iteration < iterations; iteration++, done++) {
+                moves[done % CONVERGENCE_WINDOW] = step(pool, iterations);
+                if (checkpoint != null) {
+                    save(checkpoint);
+                }
+                if (done + 1 >= CONVERGENCE_WINDOW) {
+                    reportConvergence(moves);
+                }
+            }
+        } finally {
+            pool.shutdown();
+        }
+        return parameters.copy();
+    }
+
+    /**
+     * Plays the tuned parameters against the initial ones.
+     *
+     * @param games - Number of games to play.
+     * @return The winnings of the tuned player, of the initial one and the
+     * draws.
+     * @throws InterruptedException If interrupted while waiting for games.
+     * @throws ExecutionException   If a game has failed.
+     */
+    public int[] playAgainstDefaults(int games)
+            throws InterruptedException, ExecutionException {
+        ExecutorService pool = Executors.newFixedThreadPool(threads);
+        try {
+            return playMatch(pool, parameters, defaults, games,
+                    RoundRange.rangeSeed(seed, -1));
+        } finally {
+            pool.shutdown();
+        }
+    }
+
+    /**
+     * Restores the progress of a run from a checkpoint file, if there is
+     * one.
+     *
+     * @param path - The checkpoint file.
+     * @return True if the run was restored, False if there is no checkpoint.
+     * @throws IOException If the checkpoint could not be read, is malformed
+     *                     or is of a run of another seed.
+     */
+    public boolean restore(String path) throws IOException {
+        if (!Files.exists(Paths.get(path))) {
+            return false;
+        }
+        try (BufferedReader in = new BufferedReader(new FileReader(path))) {
+            String[] seedLine = in.readLine().split(" ", 2);
+            String[] iterationLine = in.readLine().split(" ", 2);
+            String[] parametersLine = in.readLine().split(" ", 2);
+            if (!seedLine[0].equals(SEED_KEY) ||
+                    Long.parseLong(seedLine[1]) != seed ||
+                    !iterationLine[0].equals(ITERATION_KEY) ||
+                    !parametersLine[0].equals(PARAMETERS_KEY)) {
+                throw new IOException(String.format(CHECKPOINT_ERR, path));
+            }
+            ParameterSet restored = defaults.copy();
+            restored.parse(parametersLine[1]);
+            iteration = Integer.parseInt(iterationLine[1]);
+            parameters = restored;
+            return true;
+        } catch (NullPointerException | IllegalArgumentException |
+                 ArrayIndexOutOfBoundsException e) {
+            throw new IOException(String.format(CHECKPOINT_ERR, path), e);
+        }
+    }
+
+    /**
+     * @return The number of iterations done so far.
+     */
+    public int getIteration() {
+        return iteration;
+    }
+
+    /**
+     * @return The current parameters.
+     */
+    public ParameterSet getParameters() {
+        return parameters.copy();
+    }
+
+    /* ************ PRIVATE METHODS *********** */
+
+    /*
+        Runs a single iteration: perturbs the parameters, plays the two
+        perturbed players against each other and moves the parameters by
+        the estimated gradient.
+        Returns how far the parameters moved, in steps (root mean square).
+     */
+    private double step(ExecutorService pool, int iterations)
+            throws InterruptedException, ExecutionException {
+        long iterationSeed = RoundRange.rangeSeed(seed, iteration);
+        double moveGain = MOVE_GAIN / Math.pow(iteration + 1 +
+                STABILITY * iterations, ALPHA);
+        double perturbation = PERTURBATION_GAIN /
+                Math.pow(iteration + 1, GAMMA);
+        Random random = new Random(iterationSeed);
+        List<String> names = parameters.names();
+        int[] signs = new int[names.size()];
+        ParameterSet plus = parameters.copy();
+        ParameterSet minus = parameters.copy();
+        for (int i = 0; i < signs.length; i++) {
+            String name = names.get(i);
+            signs[i] = random.nextBoolean() ? 1 : -1;
+            double delta = signs[i] * perturbation * parameters.getStep(name);
+            plus.set(name, parameters.get(name) + delta);
+            minus.set(name, parameters.get(name) - delta);
+        }
+        int[] winnings = playMatch(pool, plus, minus, gamesPerIteration,
+                iterationSeed);
+        double score = (winnings[0] - winnings[1]) /
+                (double) gamesPerIteration;
+        double squares = 0;
+        for (int i = 0; i < signs.length; i++) {
+            String name = names.get(i);
+            double before = parameters.get(name);
+            parameters.set(name, before + moveGain * score /
+                    (2 * perturbation * signs[i]) * parameters.getStep(name));
+            double moved = (parameters.get(name) - before) /
+                    parameters.getStep(name);
+            squares += moved * moved;
+        }
+        double moved = Math.sqrt(squares / Math.max(1, signs.length));
+        System.out.println(String.format(ITERATION_MSG, iteration + 1, score,
+                winnings[0], winnings[1], winnings[2], moved, parameters));
+        return moved;
+    }
+
+    /*
+        Plays a match between players of the two parameter sets, split into
+        chunks played in parallel, each chunk by its own seeded players (the
+        chunks do not depend on the number of threads, so neither do the
+        results).
+        Returns the winnings of the first set, of the second and the draws.
+     */
+    private int[] playMatch(ExecutorService pool, ParameterSet first,
+                            ParameterSet second, int games, long matchSeed)
+            throws InterruptedException, ExecutionException {
+        int chunks = (games + CHUNK_GAMES - 1) / CHUNK_GAMES;
+        List<Future<int[]>> pending = new ArrayList<>();
+        for (int chunk = 0; chunk < chunks; chunk++) {
+            int firstRound = (int) ((long) games * chunk / chunks);
+            int endRound = (int) ((long) games * (chunk + 1) / chunks);
+            long chunkSeed = RoundRange.rangeSeed(matchSeed, chunk);
+            pending.add(pool.submit(() -> {
+                Player[] players = {builder.apply(chunkSeed, first),
+                        builder.apply(RoundRange.rangeSeed(chunkSeed, 0),
+                                second)};
+                return new Tournament(endRound - firstRound,
+                        new VoidRenderer(), players).playRounds(firstRound,
+                        endRound);
+            }));
+        }
+        int[] winnings = new int[RoundRange.TALLY_SIZE];
+        for (Future<int[]> result : pending) {
+            int[] chunkWinnings = result.get();
+            for (int i = 0; i < winnings.length; i++) {
+                winnings[i] += chunkWinnings[i];
+            }
+        }
+        return winnings;
+    }
+
+    /*
+        Reports whether the parameters moved little over the last
+        iterations.
+     */
+    private void reportConvergence(double[] moves) {
+        double total = 0;
+        for (double moved : moves) {
+            total += moved;
+        }
+        double average = total / moves.length;
+        if (average < CONVERGED_STEPS) {
+            System.out.println(String.format(CONVERGED_MSG, average,
+                    moves.length));
+        }
+    }
+
+    /*
+        Writes the progress of the run to the checkpoint file. The file is
+        replaced atomically, so a crash while writing keeps the previous
+        checkpoint.
+     */
+    private void save(String path) throws IOException {
+        Path temp = Paths.get(path + TEMP_SUFFIX);
+        try (PrintWriter out = new PrintWriter(temp.toFile())) {
+            out.println(SEED_KEY + " " + seed);
+            out.println(ITERATION_KEY + " " + (iteration + 1));
+            out.println(PARAMETERS_KEY + " " + parameters);
+        }
+        Files.move(temp, Paths.get(path), StandardCopyOption.REPLACE_EXISTING,
+                StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    /* ************ MAIN *********** */
+
+    /*
+        Tunes the parameters of the 'snartypamts' player.
+     */
+    public static void main(String[] args) throws Exception {
+        int iterations;
+        int games;
+        int threads = Runtime.getRuntime().availableProcessors();
+        long seed = DEFAULT_SEED;
+        try {
+            iterations = Integer.parseInt(args[ITERATIONS]);
+            games = Integer.parseInt(args[GAMES]);
+            if (args.length > THREADS) {
+                threads = Integer.parseInt(args[THREADS]);
+            }
+            if (args.length > SEED) {
+                seed = Long.parseLong(args[SEED]);
+            }
+        } catch (NumberFormatException | ArrayIndexOutOfBoundsException e) {
+            System.err.println(USAGE_ERR);
+            return;
+        }
+        if (iterations < 0 || games < 1 || threads < 1 ||
+                args.length > CHECKPOINT + 1) {
+            System.err.println(USAGE_ERR);
+            return;
+        }
+        String checkpoint = args.length > CHECKPOINT ? args[CHECKPOINT] : null;
+        SpsaTuner tuner = new SpsaTuner(SnartypamtsPlayer::new,
+                SnartypamtsPlayer.defaultParameters(), games, threads, seed);
+        if (checkpoint != null && tuner.restore(checkpoint)) {
+            System.out.println(String.format(RESUMED_MSG,
+                    tuner.getIteration(), tuner.getParameters()));
+        }
+        ParameterSet tuned = tuner.run(iterations, checkpoint);
+        System.out.println(String.format(FINAL_MSG, tuned));
+        int[] match = tuner.playAgainstDefaults(games);
+        System.out.println(String.format(MATCH_MSG, games, match[0],
+                match[1], match[2], (match[0] - match[1]) / (double) games));
+    }
+}
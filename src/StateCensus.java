@@ -0,0 +1,690 @@
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.LongConsumer;
+
+/**
+ * Counts the positions reachable on a board of a given configuration (size
+ * and win streak, not only that of Board), ply by ply, and how many of them
+ * are won by X, won by O, drawn, or still going on - to size caches and
+ * tablebases before building them.
+ * The census is a breadth first search, a level per ply: every position of
+ * a level that is still going on is expanded by all the moves of the player
+ * to move, and a position in which the last move made a streak (or filled
+ * the board) ends there, as it does in a game.
+ * Positions are reduced by the 8 symmetries of the square board, unless
+ * running with -Dcensus.symmetries=false: a position is kept as its smallest
+ * symmetric image, encoded as a number in base 3 (a digit per cell), which
+ * fits a long for boards of up to 39 cells.
+ * The positions of a level are deduplicated in shards - open addressing
+ * hash sets of primitive longs, each under its own lock - and every worker
+ * thread buffers the positions it generates per shard, so a shard is locked
+ * once per buffer rather than per position. A shard that outgrows its share
+ * of the memory budget spills its positions, sorted, to a run file (in the
+ * temporary directory, or -Dcensus.spillDir=[dir]); the runs of a shard are
+ * merged, without duplicates, when its level is done - at most MERGE_FAN_IN
+ * of them at once (more are merged in passes), so the open files and their
+ * buffers stay bounded however much a level spills. Run files are deleted
+ * once merged or read, and those left by a failed census when it stops.
+ *
+ * @author Matanel Pataki
+ */
+public class StateCensus {
+
+    /* ************ PRIVATE MEMBERS *********** */
+    private static final String USAGE_ERR = "Usage: java StateCensus" +
+            " [board size] [win streak] [optional - last ply]" +
+            " [optional - memory in megabytes] [optional - threads]";
+    private static final String SYMMETRIES_PROPERTY = "census.symmetries";
+    private static final String SPILL_PROPERTY = "census.spillDir";
+    private static final String TEMP_DIR_PROPERTY = "java.io.tmpdir";
+    private static final String RUN_PREFIX = "census-";
+    private static final String RUN_SUFFIX = ".run";
+    private static final String DELETE_ERR = "Cannot delete the run %s: %s";
+    private static final String HEADER_MSG = "ply      positions" +
+            "        ongoing         x wins         o wins          draws" +
+            "  runs  seconds";
+    private static final String PLY_MSG =
+            "%3d %14d %14d %14d %14d %14d %5d %8.2f";
+    private static final String TOTAL_MSG = "total %12d %14d %14d %14d %14d" +
+            " %5d %8.2f";
+    private static final double NANOS_IN_SECOND = 1e9;
+    private static final int MAX_CELLS = 39; // 3 ^ 39 < 2 ^ 63
+    private static final int SYMMETRIES = 8;
+    private static final int SHARD_BITS = 8;
+    private static final int SHARDS = 1 << SHARD_BITS;
+    private static final int BUFFER_KEYS = 256; // per worker and shard
+    private static final int MERGE_FAN_IN = 64; // runs merged at once
+    private static final int MIN_SHARD_KEYS = 1 << 10;
+    private static final int BYTES_IN_MEGABYTE = 1 << 20;
+    private static final int CHUNK_BITS = 8; // cells permuted per lookup
+    private static final int CHUNK_MASK = (1 << CHUNK_BITS) - 1;
+    // outcomes of a position:
+    private static final int ONGOING = 0;
+    private static final int X_WON = 1;
+    private static final int O_WON = 2;
+    private static final int DRAWN = 3;
+    private static final int OUTCOMES = 4;
+    private static final int SIZE = 0;
+    private static final int STREAK = 1;
+    private static final int LAST_PLY = 2;
+    private static final int MEGABYTES = 3;
+    private static final int THREADS = 4;
+    private final int size;
+    private final int cells;
+    private final long allCells;
+    private final BitStreaks streaks;
+    private final int threads;
+    private final Path spillDir;
+    private final Shard[] shards = new Shard[SHARDS];
+    // the digit value of every row, by its X bits and O bits, and back:
+    private final long rowBase;
+    private final int[] rowCodes;
+    private final long[] rowXBits;
+    private final long[] rowOBits;
+    // the cells as mapped by every symmetry, a lookup per chunk of cells:
+    private final long[][][] images;
+
+    /*
+        A shard of the positions of a level: an open addressing hash set of
+        their keys, and the sorted runs it spilled to disk. Once the level
+        is done, the shard holds its positions (sorted, without duplicates)
+        for the next level to expand, in memory or in a file.
+     */
+    private final class Shard {
+        private final long[] table; // key + 1 per slot, 0 for an empty one
+        private final int spillAt;
+        private int keys;
+        private final List<Path> runs = new ArrayList<>();
+        private final List<Long> runKeys = new ArrayList<>();
+        private long[] level; // the positions of the done level, if in memory
+        private Path levelFile; // else their file
+        private long levelKeys;
+
+        Shard(int capacity) {
+            this.table = new long[capacity];
+            this.spillAt = capacity - (capacity >>> 2);
+        }
+
+        /*
+            Adds keys to the set, spilling it if it is full.
+         */
+        synchronized void addAll(long[] buffer, int count) {
+            int mask = table.length - 1;
+            for (int i = 0; i < count; i++) {
+                long entry = buffer[i] + 1;
+                int slot = (int) mix(buffer[i]) & mask;
+                while (table[slot] != 0 && table[slot] != entry) {
+                    slot = (slot + 1) & mask;
+                }
+                if (table[slot] == 0) {
+                    table[slot] = entry;
+                    if (++keys == spillAt) {
+                        spill();
+                    }
+                }
+            }
+        }
+
+        /*
+            Ends the level: keeps its positions, merging the runs if it
+            spilled any, and empties the set for the next level. Returns
+            the number of runs spilled during the level.
+         */
+        int finish() throws IOException {
+            int spilled = runs.size();
+            if (runs.isEmpty()) {
+                level = Arrays.copyOf(table, sortTable());
+                levelKeys = level.length;
+                Arrays.fill(table, 0, level.length, 0);
+                keys = 0;
+                return spilled;
+            }
+            if (keys > 0) {
+                spill();
+                spilled++;
+            }
+            while (runs.size() > MERGE_FAN_IN) {
+                Path merged = newRunFile();
+                runKeys.add(merge(MERGE_FAN_IN, merged));
+                runs.add(merged);
+            }
+            levelFile = newRunFile();
+            levelKeys = merge(runs.size(), levelFile);
+            return spilled;
+        }
+
+        /*
+            Deletes the files of the shard, e.g. once the census has failed.
+         */
+        void discard() {
+            for (Path run : runs) {
+                delete(run);
+            }
+            runs.clear();
+            runKeys.clear();
+            if (levelFile != null) {
+                delete(levelFile);
+                levelFile = null;
+            }
+        }
+
+        /*
+            Passes the positions of the done level to the given action, and
+            releases them.
+         */
+        long forEach(LongConsumer action) throws IOException {
+            long count = levelKeys;
+            if (level != null) {
+                for (long key : level) {
+                    action.accept(key);
+                }
+                level = null;
+            } else if (levelFile != null) {
+                try (DataInputStream in = openRun(levelFile)) {
+                    for (long i = 0; i < count; i++) {
+                        action.accept(in.readLong());
+                    }
+                }
+                Files.delete(levelFile);
+                levelFile = null;
+            }
+            levelKeys = 0;
+            return count;
+        }
+
+        /*
+            Writes the keys of the set, sorted, to a new run, and empties
+            the set.
+         */
+        private void spill() {
+            int count = sortTable();
+            try {
+                Path run = newRunFile();
+                try (DataOutputStream out = openOutput(run)) {
+                    for (int i = 0; i < count; i++) {
+                        out.writeLong(table[i]);
+                    }
+                }
+                runs.add(run);
+                runKeys.add((long) count);
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+            Arrays.fill(table, 0, count, 0);
+            keys = 0;
+        }
+
+        /*
+            Moves the keys of the set to the start of the table, sorted
+            (and no longer hashed), and returns their number.
+         */
+        private int sortTable() {
+            int count = 0;
+            for (int slot = 0; slot < table.length; slot++) {
+                if (table[slot] != 0) {
+                    long key = table[slot] - 1;
+                    table[slot] = 0;
+                    table[count++] = key;
+                }
+            }
+            Arrays.sort(table, 0, count);
+            return count;
+        }
+
+        /*
+            Merges the given number of first sorted runs into the given
+            file, dropping the keys found in more than one run, deletes them
+            and returns the number of keys written.
+         */
+        private long merge(int count, Path file) throws IOException {
+            DataInputStream[] ins = new DataInputStream[count];
+            long[] heads = new long[count];
+            long[] left = new long[count];
+            long written = 0;
+            try (DataOutputStream out = openOutput(file)) {
+                for (int i = 0; i < count; i++) {
+                    ins[i] = openRun(runs.get(i));
+                    left[i] = runKeys.get(i);
+                    heads[i] = left[i]-- > 0 ? ins[i].readLong() : -1;
+                }
+                long last = -1;
+                while (true) {
+                    int smallest = -1;
+                    for (int i = 0; i < count; i++) {
+                        if (heads[i] >= 0 && (smallest < 0 ||
+                                heads[i] < heads[smallest])) {
+                            smallest = i;
+                        }
+                    }
+                    if (smallest < 0) {
+                        break;
+                    }
+                    if (heads[smallest] != last) {
+                        last = heads[smallest];
+                        out.writeLong(last);
+                        written++;
+                    }
+                    heads[smallest] = left[smallest]-- > 0 ?
+                            ins[smallest].readLong() : -1;
+                }
+            } finally {
+                for (DataInputStream in : ins) {
+                    if (in != null) {
+                        in.close();
+                    }
+                }
+            }
+            for (int i = 0; i < count; i++) {
+                Files.delete(runs.get(0));
+                runs.remove(0);
+                runKeys.remove(0);
+            }
+            return written;
+        }
+    }
+
+    /*
+        A worker's view of a level being expanded: its buffers of positions
+        per shard, and the outcomes of the positions it expanded.
+     */
+    private final class Expander {
+        private final long[][] buffers = new long[SHARDS][BUFFER_KEYS];
+        private final int[] buffered = new int[SHARDS];
+        private final long[] outcomes = new long[OUTCOMES];
+
+        /*
+            Classifies a position of the given ply, and adds the positions
+            following it to their shards unless it is the last ply.
+         */
+        void expand(long key, int ply, boolean last) {
+            long xBits = 0;
+            long oBits = 0;
+            for (int row = 0; row < size; row++) {
+                int code = (int) (key % rowBase);
+                key /= rowBase;
+                xBits |= rowXBits[code] << (row * size);
+                oBits |= rowOBits[code] << (row * size);
+            }
+            int outcome = outcomeOf(xBits, oBits, ply);
+            outcomes[outcome]++;
+            if (outcome != ONGOING || last) {
+                return;
+            }
+            long empty = ~(xBits | oBits) & allCells;
+            for (; empty != 0; empty &= empty - 1) {
+                long cell = empty & -empty;
+                long child = ply % 2 == 0 ? keyOf(xBits | cell, oBits) :
+                        keyOf(xBits, oBits | cell);
+                int shard = (int) (mix(child) >>> (Long.SIZE - SHARD_BITS));
+                buffers[shard][buffered[shard]++] = child;
+                if (buffered[shard] == BUFFER_KEYS) {
+                    flush(shard);
+                }
+            }
+        }
+
+        /*
+            Adds the buffered positions of a shard to it.
+         */
+        void flush(int shard) {
+            shards[shard].addAll(buffers[shard], buffered[shard]);
+            buffered[shard] = 0;
+        }
+    }
+
+    /**
+     * CONSTRUCTOR -
+     * Initializes a census of the given board configuration.
+     *
+     * @param size      - Number of rows (and cols) of the board, at most 6.
+     * @param streak    - Number of marks in a row needed to win.
+     * @param megabytes - Memory of the hash sets of a level, past which they
+     *                  spill to disk.
+     * @param threads   - Number of worker threads.
+     */
+    public StateCensus(int size, int streak, int megabytes, int threads) {
+        if (size * size > MAX_CELLS) {
+            throw new IllegalArgumentException("Board too large: " + size +
+                    "x" + size);
+        }
+        this.size = size;
+        this.cells = size * size;
+        this.allCells = -1L >>> (Long.SIZE - cells);
+        this.streaks = new BitStreaks(size, streak);
+        this.threads = Math.max(1, threads);
+        this.spillDir = Paths.get(System.getProperty(SPILL_PROPERTY,
+                System.getProperty(TEMP_DIR_PROPERTY)));
+        int rowCells = 1 << size;
+        this.rowCodes = new int[rowCells * rowCells];
+        long base = 1;
+        for (int i = 0; i < size; i++) {
+            base *= 3;
+        }
+        this.rowBase = base;
+        this.rowXBits = new long[(int) base];
+        this.rowOBits = new long[(int) base];
+        buildRowCodes();
+        this.images = new long[Boolean.parseBoolean(System.getProperty(
+                SYMMETRIES_PROPERTY, "true")) ? SYMMETRIES : 1][][];
+        buildImages();
+        long shardKeys = (long) megabytes * BYTES_IN_MEGABYTE / Long.BYTES /
+                SHARDS;
+        int capacity = (int) Math.max(MIN_SHARD_KEYS,
+                Long.highestOneBit(Math.min(shardKeys, 1 << 30)));
+        for (int i = 0; i < SHARDS; i++) {
+            shards[i] = new Shard(capacity);
+        }
+    }
+
+    /* ************ PUBLIC METHODS *********** */
+
+    /**
+     * Runs the census up to the given ply, printing a line of counts per
+     * ply, then their totals.
+     *
+     * @param lastPly - The last ply to count the positions of.
+     * @return The counts, per ply: positions ongoing, won by X, won by O
+     * and drawn.
+     * @throws Exception If a worker has failed, or a run could not be
+     *                   written or read.
+     */
+    public long[][] run(int lastPly) throws Exception {
+        lastPly = Math.min(lastPly, cells);
+        long[][] counts = new long[lastPly + 1][OUTCOMES];
+        long[] totals = new long[OUTCOMES];
+        int totalRuns = 0;
+        long start = System.nanoTime();
+        long empty = keyOf(0, 0);
+        shards[(int) (mix(empty) >>> (Long.SIZE - SHARD_BITS))]
+                .addAll(new long[]{empty}, 1);
+        ExecutorService pool = Executors.newFixedThreadPool(threads);
+        System.out.println(HEADER_MSG);
+        try {
+            int runs = finishLevel(pool);
+            for (int ply = 0; ply <= lastPly; ply++) {
+                long levelStart = System.nanoTime();
+                counts[ply] = expandLevel(pool, ply, ply == lastPly);
+                int spilled = ply < lastPly ? finishLevel(pool) : 0;
+                long positions = 0;
+                for (int outcome = 0; outcome < OUTCOMES; outcome++) {
+                    positions += counts[ply][outcome];
+                    totals[outcome] += counts[ply][outcome];
+                }
+                System.out.println(String.format(PLY_MSG, ply, positions,
+                        counts[ply][ONGOING], counts[ply][X_WON],
+                        counts[ply][O_WON], counts[ply][DRAWN], runs,
+                        (System.nanoTime() - levelStart) / NANOS_IN_SECOND));
+                totalRuns += runs;
+                runs = spilled;
+            }
+        } finally {
+            pool.shutdown();
+            for (Shard shard : shards) {
+                shard.discard(); // the files a failure left, if any
+            }
+        }
+        System.out.println(String.format(TOTAL_MSG, totals[ONGOING] +
+                        totals[X_WON] + totals[O_WON] + totals[DRAWN],
+                totals[ONGOING], totals[X_WON], totals[O_WON], totals[DRAWN],
+                totalRuns, (System.nanoTime() - start) / NANOS_IN_SECOND));
+        return counts;
+    }
+
+    /* ************ PRIVATE METHODS *********** */
+
+    /*
+        Expands the positions of a level in parallel, a shard per task, and
+        returns their outcomes.
+     */
+    private long[] expandLevel(ExecutorService pool, int ply, boolean last)
+            throws Exception {
+        AtomicInteger next = new AtomicInteger();
+        List<Callable<long[]>> workers = new ArrayList<>();
+        for (int i = 0; i < threads; i++) {
+            workers.add(() -> {
+                Expander expander = new Expander();
+                for (int shard = next.getAndIncrement(); shard < SHARDS;
+                     shard = next.getAndIncrement()) {
+                    shards[shard].forEach(key ->
+                            expander.expand(key, ply, last));
+                }
+                for (int shard = 0; shard < SHARDS; shard++) {
+                    expander.flush(shard);
+                }
+                return expander.outcomes;
+            });
+        }
+        long[] outcomes = new long[OUTCOMES];
+        for (Future<long[]> worker : pool.invokeAll(workers)) {
+            long[] counted = worker.get();
+            for (int outcome = 0; outcome < OUTCOMES; outcome++) {
+                outcomes[outcome] += counted[outcome];
+            }
+        }
+        return outcomes;
+    }
+
+    /*
+        Ends the level being built in all the shards, in parallel, and
+        returns the number of runs they spilled.
+     */
+    private int finishLevel(ExecutorService pool) throws Exception {
+        List<Callable<Integer>> tasks = new ArrayList<>();
+        for (Shard shard : shards) {
+            tasks.add(shard::finish);
+        }
+        int spilled = 0;
+        for (Future<Integer> task : pool.invokeAll(tasks)) {
+            spilled += task.get();
+        }
+        return spilled;
+    }
+
+    /*
+        Returns the outcome of a position reached at the given ply: only
+        the player who moved last may have made a streak.
+     */
+    private int outcomeOf(long xBits, long oBits, int ply) {
+        if (ply % 2 == 1 && streaks.hasStreak(xBits)) {
+            return X_WON;
+        }
+        if (ply > 0 && ply % 2 == 0 && streaks.hasStreak(oBits)) {
+            return O_WON;
+        }
+        return ply == cells ? DRAWN : ONGOING;
+    }
+
+    /*
+        Returns the key of a position: its smallest symmetric image (by X
+        bits, then by O bits), encoded in base 3 a row at a time.
+     */
+    private long keyOf(long xBits, long oBits) {
+        long bestX = xBits;
+        long bestO = oBits;
+        for (int s = 1; s < images.length; s++) {
+            long x = imageOf(xBits, images[s]);
+            if (x <= bestX) {
+                long o = imageOf(oBits, images[s]);
+                if (x < bestX || o < bestO) {
+                    bestX = x;
+                    bestO = o;
+                }
+            }
+        }
+        long rowMask = (1L << size) - 1;
+        long key = 0;
+        for (int row = size - 1; row >= 0; row--) {
+            int xRow = (int) ((bestX >>> (row * size)) & rowMask);
+            int oRow = (int) ((bestO >>> (row * size)) & rowMask);
+            key = key * rowBase + rowCodes[(xRow << size) | oRow];
+        }
+        return key;
+    }
+
+    /*
+        Maps cells by a symmetry, a chunk of cells per lookup.
+     */
+    private static long imageOf(long bits, long[][] chunks) {
+        long image = 0;
+        for (int chunk = 0; bits != 0; chunk++, bits >>>= CHUNK_BITS) {
+            image |= chunks[chunk][(int) bits & CHUNK_MASK];
+        }
+        return image;
+    }
+
+    /*
+        Computes the base 3 value of every row (a digit per cell: 0 for a
+        blank, 1 for X and 2 for O), and the marks of every value.
+     */
+    private void buildRowCodes() {
+        for (int code = 0; code < rowBase; code++) {
+            int digits = code;
+            long xRow = 0;
+            long oRow = 0;
+            for (int col = 0; col < size; col++, digits /= 3) {
+                if (digits % 3 == 1) {
+                    xRow |= 1L << col;
+                } else if (digits % 3 == 2) {
+                    oRow |= 1L << col;
+                }
+            }
+            rowXBits[code] = xRow;
+            rowOBits[code] = oRow;
+            rowCodes[(int) ((xRow << size) | oRow)] = code;
+        }
+    }
+
+    /*
+        Computes, for every symmetry of the square board (the identity
+        first) and every chunk of cells, the image of every subset of the
+        chunk.
+     */
+    private void buildImages() {
+        int n = size;
+        int chunks = (cells + CHUNK_BITS - 1) / CHUNK_BITS;
+        int[][] cellImages = new int[SYMMETRIES][cells];
+        for (int row = 0; row < n; row++) {
+            for (int col = 0; col < n; col++) {
+                int[][] mapped = {{row, col}, {col, n - 1 - row},
+                        {n - 1 - row, n - 1 - col}, {n - 1 - col, row},
+                        {row, n - 1 - col}, {n - 1 - row, col},
+                        {col, row}, {n - 1 - col, n - 1 - row}};
+                for (int s = 0; s < SYMMETRIES; s++) {
+                    cellImages[s][row * n + col] =
+                            mapped[s][0] * n + mapped[s][1];
+                }
+            }
+        }
+        for (int s = 0; s < images.length; s++) {
+            images[s] = new long[chunks][1 << CHUNK_BITS];
+            for (int chunk = 0; chunk < chunks; chunk++) {
+                for (int subset = 0; subset < 1 << CHUNK_BITS; subset++) {
+                    long image = 0;
+                    for (int bit = 0; bit < CHUNK_BITS; bit++) {
+                        int cell = chunk * CHUNK_BITS + bit;
+                        if ((subset & (1 << bit)) != 0 && cell < cells) {
+                            image |= 1L << cellImages[s][cell];
+                        }
+                    }
+                    images[s][chunk][subset] = image;
+                }
+            }
+        }
+    }
+
+    /*
+        Creates a new run file in the spill directory.
+     */
+    private Path newRunFile() throws IOException {
+        return Files.createTempFile(spillDir, RUN_PREFIX, RUN_SUFFIX);
+    }
+
+    /*
+        Deletes a run file, reporting (rather than throwing) a failure.
+     */
+    private static void delete(Path run) {
+        try {
+            Files.deleteIfExists(run);
+        } catch (IOException e) {
+            System.err.println(String.format(DELETE_ERR, run,
+                    e.getMessage()));
+        }
+    }
+
+    /*
+        Opens a run file for reading.
+     */
+    private static DataInputStream openRun(Path run) throws IOException {
+        return new DataInputStream(new BufferedInputStream(
+                Files.newInputStream(run)));
+    }
+
+    /*
+        Opens a run file for writing.
+     */
+    private static DataOutputStream openOutput(Path run) throws IOException {
+        return new DataOutputStream(new BufferedOutputStream(
+                Files.newOutputStream(run)));
+    }
+
+    /*
+        Scrambles the bits of a long (the SplitMix64 finalizer).
+     */
+    private static long mix(long z) {
+        z = (z ^ (z >>> 30)) * 0xBF58476D1CE4E5B9L;
+        z = (z ^ (z >>> 27)) * 0x94D049BB133111EBL;
+        return z ^ (z >>> 31);
+    }
+
+    /* ************ MAIN *********** */
+
+    /*
+        Runs a census of the given board configuration.
+     */
+    public static void main(String[] args) throws Exception {
+        int size;
+        int streak;
+        int lastPly = Integer.MAX_VALUE;
+        int megabytes = (int) (Runtime.getRuntime().maxMemory() / 4 /
+                BYTES_IN_MEGABYTE);
+        int threads = Runtime.getRuntime().availableProcessors();
+        try {
+            size = Integer.parseInt(args[SIZE]);
+            streak = Integer.parseInt(args[STREAK]);
+            if (args.length > LAST_PLY) {
+                lastPly = Integer.parseInt(args[LAST_PLY]);
+            }
+            if (args.length > MEGABYTES) {
+                megabytes = Integer.parseInt(args[MEGABYTES]);
+            }
+            if (args.length > THREADS) {
+                threads = Integer.parseInt(args[THREADS]);
+            }
+        } catch (NumberFormatException | ArrayIndexOutOfBoundsException e) {
+            System.err.println(USAGE_ERR);
+            return;
+        }
+        if (size < 1 || size * size > MAX_CELLS || streak < 1 ||
+                streak > size || lastPly < 0 || megabytes < 1 ||
+                threads < 1 || args.length > THREADS + 1) {
+            System.err.println(USAGE_ERR);
+            return;
+        }
+        new StateCensus(size, streak, megabytes, threads).run(lastPly);
+    }
+}
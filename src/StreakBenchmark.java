@@ -0,0 +1,216 @@
+import java.util.Random;
+
+/**
+ * A benchmark of the streak queries, comparing the bit-parallel BitStreaks
+ * with a scalar cell by cell traversal of the board (a long per row), over
+ * all the board sizes BitStreaks fits.
+ * The results of both are cross-checked on every position, and the board
+ * size from which the bit-parallel queries win is reported.
+ *
+ * @author Matanel Pataki
+ */
+public class StreakBenchmark {
+
+    /* ************ PRIVATE MEMBERS *********** */
+    private static final int[] SIZES = {3, 4, 5, 6, 7, 8};
+    private static final int MAX_STREAK = 4;
+    private static final int POSITIONS = 1024;
+    private static final int WARMUP_ROUNDS = 20;
+    private static final int ROUNDS = 50;
+    private static final double OWN_DENSITY = 0.25;
+    private static final double EMPTY_DENSITY = 0.5;
+    private static final String HEADER = String.format(
+            "%6s %6s | %-26s | %-26s", "size", "streak",
+            "any streak ns: scalar/bits", "completing ns: scalar/bits");
+    private static final String ROW_FORMAT =
+            "%6s %6d | %8.1f %8.1f          | %8.1f %8.1f";
+    private static final String CROSSOVER_MSG =
+            "bit-parallel queries beat the scalar traversal from size %s";
+    private static final String MISMATCH_ERR = "Mismatch on %dx%d board";
+    private static final int[][] STEPS = {{0, 1}, {1, 0}, {1, 1}, {1, -1}};
+    private static final int[][] BACK_STEPS =
+            {{0, -1}, {-1, 0}, {-1, -1}, {-1, 1}};
+    private static long sink; // keeps the results alive
+
+    /* ************ MAIN *********** */
+
+    public static void main(String[] args) {
+        long seed = args.length > 0 ? Long.parseLong(args[0]) : 0;
+        Random random = new Random(seed);
+        System.out.println(HEADER);
+        String crossover = "none";
+        for (int size : SIZES) {
+            int streak = Math.min(MAX_STREAK, size);
+            double[] nanos = benchmark(size, streak, random);
+            System.out.println(String.format(ROW_FORMAT, size + "x" + size,
+                    streak, nanos[0], nanos[1], nanos[2], nanos[3]));
+            if (crossover.equals("none") && nanos[1] < nanos[0] &&
+                    nanos[3] < nanos[2]) {
+                crossover = size + "x" + size;
+            }
+        }
+        System.out.println(String.format(CROSSOVER_MSG, crossover));
+    }
+
+    /* ************ PRIVATE METHODS *********** */
+
+    /*
+        Times all the queries on random positions of the given board.
+        Returns the average nanoseconds per query of: scalar and bit-parallel
+        any streak, then scalar and bit-parallel completing cells.
+     */
+    private static double[] benchmark(int size, int streak, Random random) {
+        BitStreaks streaks = new BitStreaks(size, streak);
+        long[][] own = new long[POSITIONS][size];
+        long[][] empty = new long[POSITIONS][size];
+        long[] ownBits = new long[POSITIONS];
+        long[] emptyBits = new long[POSITIONS];
+        fillPositions(size, random, own, empty, ownBits, emptyBits);
+        crossCheck(streaks, size, streak, own, empty, ownBits, emptyBits);
+        double[] nanos = new double[4];
+        for (int query = 0; query < nanos.length; query++) {
+            for (int round = 0; round < WARMUP_ROUNDS; round++) {
+                runQuery(query, streaks, size, streak, own, empty,
+                        ownBits, emptyBits);
+            }
+            long start = System.nanoTime();
+            for (int round = 0; round < ROUNDS; round++) {
+                runQuery(query, streaks, size, streak, own, empty,
+                        ownBits, emptyBits);
+            }
+            nanos[query] = (System.nanoTime() - start) /
+                    (double) (ROUNDS * POSITIONS);
+        }
+        return nanos;
+    }
+
+    /*
+        Runs a single query over all the positions.
+     */
+    private static void runQuery(int query, BitStreaks streaks, int size,
+                                 int streak, long[][] own, long[][] empty,
+                                 long[] ownBits, long[] emptyBits) {
+        long[] out = new long[size];
+        long result = 0;
+        for (int i = 0; i < POSITIONS; i++) {
+            switch (query) {
+                case 0:
+                    result += scalarHasStreak(own[i], size, streak) ? 1 : 0;
+                    break;
+                case 1:
+                    result += streaks.hasStreak(ownBits[i]) ? 1 : 0;
+                    break;
+                case 2:
+                    scalarCompletingCells(own[i], empty[i], size, streak, out);
+                    result += out[0];
+                    break;
+                case 3:
+                    result += streaks.completingCells(ownBits[i],
+                            emptyBits[i]);
+            }
+        }
+        sink += result;
+    }
+
+    /*
+        Fills random positions, both a long per row (for the scalar
+        traversal) and packed in a single long (for BitStreaks).
+     */
+    private static void fillPositions(int size, Random random,
+                                      long[][] own, long[][] empty,
+                                      long[] ownBits, long[] emptyBits) {
+        for (int i = 0; i < POSITIONS; i++) {
+            for (int row = 0; row < size; row++) {
+                for (int col = 0; col < size; col++) {
+                    double draw = random.nextDouble();
+                    boolean isOwn = draw < OWN_DENSITY;
+                    boolean isEmpty = !isOwn &&
+                            draw < OWN_DENSITY + EMPTY_DENSITY;
+                    own[i][row] |= isOwn ? 1L << col : 0;
+                    empty[i][row] |= isEmpty ? 1L << col : 0;
+                    ownBits[i] |= isOwn ? 1L << (row * size + col) : 0;
+                    emptyBits[i] |= isEmpty ? 1L << (row * size + col) : 0;
+                }
+            }
+        }
+    }
+
+    /*
+        Makes sure the bit-parallel queries agree with the scalar traversal.
+     */
+    private static void crossCheck(BitStreaks streaks, int size, int streak,
+                                   long[][] own, long[][] empty,
+                                   long[] ownBits, long[] emptyBits) {
+        long[] scalar = new long[size];
+        for (int i = 0; i < POSITIONS; i++) {
+            scalarCompletingCells(own[i], empty[i], size, streak, scalar);
+            long bits = streaks.completingCells(ownBits[i], emptyBits[i]);
+            boolean agree = scalarHasStreak(own[i], size, streak) ==
+                    streaks.hasStreak(ownBits[i]);
+            for (int row = 0; row < size; row++) {
+                agree &= ((bits >>> (row * size)) & ((1L << size) - 1)) ==
+                        scalar[row];
+            }
+            if (!agree) {
+                throw new IllegalStateException(
+                        String.format(MISMATCH_ERR, size, size));
+            }
+        }
+    }
+
+    /*
+        Checks for a streak by walking the board cell by cell.
+     */
+    private static boolean scalarHasStreak(long[] own, int size, int streak) {
+        for (int row = 0; row < size; row++) {
+            for (int col = 0; col < size; col++) {
+                for (int[] step : STEPS) {
+                    if (countFrom(own, size, row, col, step) >= streak) {
+                        return true;
+                    }
+                }
+            }
+        }
+        return false;
+    }
+
+    /*
+        Finds the completing cells by trying every empty cell in turn.
+     */
+    private static void scalarCompletingCells(long[] own, long[] empty,
+                                              int size, int streak,
+                                              long[] out) {
+        for (int row = 0; row < size; row++) {
+            out[row] = 0;
+            for (int col = 0; col < size; col++) {
+                if ((empty[row] & (1L << col)) == 0) {
+                    continue;
+                }
+                own[row] |= 1L << col;
+                for (int d = 0; d < STEPS.length; d++) {
+                    if (countFrom(own, size, row, col, STEPS[d]) +
+                            countFrom(own, size, row, col, BACK_STEPS[d]) - 1
+                            >= streak) {
+                        out[row] |= 1L << col;
+                    }
+                }
+                own[row] &= ~(1L << col);
+            }
+        }
+    }
+
+    /*
+        Counts the marks in a row from the given cell in the given direction.
+     */
+    private static int countFrom(long[] own, int size, int row, int col,
+                                 int[] step) {
+        int count = 0;
+        while (row >= 0 && row < size && col >= 0 && col < size &&
+                (own[row] & (1L << col)) != 0) {
+            count++;
+            row += step[0];
+            col += step[1];
+        }
+        return count;
+    }
+}
@@ -0,0 +1,153 @@
+/**
+ * A threat-space search, finding forced wins made of continuous threats
+ * (a "victory by continuous fours"): the attacker only plays moves that
+ * threaten to win on the next move, so the defender's reply is forced to
+ * the single cell blocking it, until the attacker makes a double threat or
+ * completes a streak.
+ * Since every defender node has a single reply and the attacker only tries
+ * threatening moves, the search sees forced wins deep in the game tree at a
+ * small fraction of the cost of a full-width search. It may miss wins that
+ * need a quiet (non-threatening) move, but every win it finds is sound.
+ * A search is bounded by a node budget and by the Deadline of the move being
+ * played, so any Player may call it on its turn. Positions proven to have no
+ * forced win are remembered between searches.
+ * A search is not thread-safe; every player should own its search.
+ *
+ * @author Matanel Pataki
+ */
+public final class ThreatSearch {
+
+    /* ************ PUBLIC MEMBERS *********** */
+    public static final long UNLIMITED = Long.MAX_VALUE;
+
+    /* ************ PRIVATE MEMBERS *********** */
+    private static final BitStreaks STREAKS =
+            new BitStreaks(Board.SIZE, Board.WIN_STREAK);
+    private static final int CHECK_INTERVAL = 1024; // nodes between checks
+    private static final String ENGINE = "threats";
+    private static final String WIN = "win";
+    private static final String NO_WIN = "no win";
+    private static final String STOPPED = "stopped";
+    private static final int FAILED_BITS = 12;
+    // hashes of positions without a forced win for the attacker to move:
+    private final long[] failed = new long[1 << FAILED_BITS];
+    private Deadline deadline = Deadline.NONE;
+    private long nodeBudget;
+    private long nodes;
+    private boolean stopped;
+
+    /* ************ PUBLIC METHODS *********** */
+
+    /**
+     * Searches for a forced win of continuous threats.
+     *
+     * @param board      - The position to search, the attacker to move.
+     * @param attacker   - The mark of the player to move.
+     * @param nodeBudget - The most nodes to search, UNLIMITED for no limit.
+     * @return The cell (row * Board.SIZE + col) of the first move of a
+     * forced win, Board.NO_CELL if none was found.
+     */
+    public int findForcedWin(Board board, Mark attacker, long nodeBudget) {
+        this.deadline = Deadline.current();
+        this.nodeBudget = nodeBudget;
+        this.nodes = 0;
+        this.stopped = false;
+        if (board.gameEnded()) {
+            return Board.NO_CELL;
+        }
+        BoardSnapshot snapshot = board.snapshot();
+        long own = attacker == Mark.X ? snapshot.getXBits() :
+                snapshot.getOBits();
+        long opp = attacker == Mark.X ? snapshot.getOBits() :
+                snapshot.getXBits();
+        GameEvents.SearchIteration event = new GameEvents.SearchIteration();
+        event.begin();
+        int cell = attack(own, opp);
+        event.end();
+        if (event.shouldCommit()) {
+            event.engine = ENGINE;
+            event.nodes = nodes;
+            event.result = cell != Board.NO_CELL ? WIN :
+                    stopped ? STOPPED : NO_WIN;
+            event.commit();
+        }
+        return cell;
+    }
+
+    /**
+     * @return The number of nodes searched by the last search.
+     */
+    public long getNodes() {
+        return nodes;
+    }
+
+    /**
+     * @return True if the last search ran out of nodes or time before it
+     * was complete, False otherwise.
+     */
+    public boolean wasStopped() {
+        return stopped;
+    }
+
+    /* ************ PRIVATE METHODS *********** */
+
+    /*
+        Searches the position with the attacker to move, and returns the
+        first move of a forced win, NO_CELL if there is none (or the search
+        was stopped).
+     */
+    private int attack(long own, long opp) {
+        if (++nodes > nodeBudget ||
+                (nodes % CHECK_INTERVAL == 0 && deadline.expired())) {
+            stopped = true;
+        }
+        if (stopped) {
+            return Board.NO_CELL;
+        }
+        long empty = ~(own | opp) & Board.ALL_CELLS;
+        long wins = STREAKS.completingCells(own, empty);
+        if (wins != 0) {
+            return Long.numberOfTrailingZeros(wins);
+        }
+        long blocks = STREAKS.completingCells(opp, empty);
+        if (Long.bitCount(blocks) > 1) {
+            return Board.NO_CELL; // the defender wins whatever we block
+        }
+        long hash = hash(own, opp);
+        int slot = (int) (hash >>> (Long.SIZE - FAILED_BITS));
+        if (failed[slot] == hash) {
+            return Board.NO_CELL;
+        }
+        // when the defender threatens, blocking is the only move:
+        long candidates = blocks != 0 ? blocks : empty;
+        for (; candidates != 0; candidates &= candidates - 1) {
+            long move = candidates & -candidates;
+            long threats = STREAKS.completingCells(own | move, empty & ~move);
+            if (Long.bitCount(threats) > 1) {
+                return Long.numberOfTrailingZeros(move);
+            }
+            long rest = empty & ~move & ~threats;
+            if (threats == 0 || rest == 0) {
+                continue; // not forcing, or a drawn full board
+            }
+            if (attack(own | move, opp | threats) != Board.NO_CELL) {
+                return Long.numberOfTrailingZeros(move);
+            }
+            if (stopped) {
+                return Board.NO_CELL;
+            }
+        }
+        failed[slot] = hash;
+        return Board.NO_CELL;
+    }
+
+    /*
+        Hashes the position of the attacker to move.
+     */
+    private static long hash(long own, long opp) {
+        long hash = own * 0x9E3779B97F4A7C15L ^ opp;
+        hash = (hash ^ (hash >>> 30)) * 0xBF58476D1CE4E5B9L;
+        hash = (hash ^ (hash >>> 27)) * 0x94D049BB133111EBL;
+        return (hash ^ (hash >>> 31)) | 1; // never 0, the empty slot
+    }
+}
@@ -0,0 +1,83 @@
+/**
+ * Represents the time control of a game.
+ * Holds the time budget of a single move, the time budget of a whole game
+ * (for each of the players) and what to do when a player overruns its clock:
+ * either play a fallback move on its behalf or forfeit the game.
+ *
+ * @author Matanel Pataki
+ */
+public class TimeControl {
+
+    /* ************ PUBLIC MEMBERS *********** */
+    public static final long UNLIMITED = Long.MAX_VALUE;
+
+    /* ************ PRIVATE MEMBERS *********** */
+    private static final long NANOS_IN_MILLI = 1_000_000L;
+    private static final long DEFAULT_GRACE_MILLIS = 5;
+    private final long moveNanos;
+    private final long gameNanos;
+    private final long graceNanos;
+    private final boolean forfeitOnTimeout;
+
+    /**
+     * CONSTRUCTOR -
+     * Initializes the time control.
+     *
+     * @param moveMillis       - Time budget of a single move (or UNLIMITED).
+     * @param gameMillis       - Time budget of a player for the whole game
+     *                         (or UNLIMITED).
+     * @param forfeitOnTimeout - True to forfeit the game when a player
+     *                         overruns, False to play a fallback move instead.
+     */
+    public TimeControl(long moveMillis, long gameMillis,
+                       boolean forfeitOnTimeout) {
+        this.moveNanos = toNanos(moveMillis);
+        this.gameNanos = toNanos(gameMillis);
+        this.graceNanos = DEFAULT_GRACE_MILLIS * NANOS_IN_MILLI;
+        this.forfeitOnTimeout = forfeitOnTimeout;
+    }
+
+    /* ************ PUBLIC METHODS *********** */
+
+    /**
+     * @return The time budget of a single move in nanoseconds.
+     */
+    public long getMoveNanos() {
+        return this.moveNanos;
+    }
+
+    /**
+     * @return The time budget of a player for a whole game in nanoseconds.
+     */
+    public long getGameNanos() {
+        return this.gameNanos;
+    }
+
+    /**
+     * @return The time a player may take past its deadline before the move
+     * is taken away from it, in nanoseconds.
+     */
+    public long getGraceNanos() {
+        return this.graceNanos;
+    }
+
+    /**
+     * @return True if a player who overruns its clock loses the game,
+     * False if a fallback move is played on its behalf.
+     */
+    public boolean forfeitsOnTimeout() {
+        return this.forfeitOnTimeout;
+    }
+
+    /* ************ PRIVATE METHODS *********** */
+
+    /*
+        Converts the given milliseconds to nanoseconds, keeping UNLIMITED.
+     */
+    private static long toNanos(long millis) {
+        if (millis == UNLIMITED || millis >= UNLIMITED / NANOS_IN_MILLI) {
+            return UNLIMITED;
+        }
+        return millis * NANOS_IN_MILLI;
+    }
+}
@@ -1,6 +1,22 @@
+import java.io.BufferedWriter;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
 /**
  * Represents a tournament between 2 players, which will be chosen by the user.
  * The user will also supply the number of rounds to be play in the tournament.
+ * Optionally, the user may supply a time budget for each move and for each
+ * game, in which case every game is played against the clock.
+ * Running with -Dtournament.record=[file] records all the games to a game
+ * log, which may later be analyzed by the ReplayAnalyzer.
+ * Running with -Dtournament.profile=true prints the CPU time and the
+ * allocations of every player type after the winnings (see PlayerProfiler).
+ * Running with -Dtournament.analytics=[file] prints heatmaps of the moves of
+ * every player type, and writes their analytics as CSV (see MoveAnalytics).
+ * Running with -Dsearch.ponder=true prints how the pondering players (see
+ * Ponderer) fared after the winnings.
  *
  * @author Matanel Pataki
  */
@@ -10,17 +26,29 @@ public class Tournament {
     private static final String BAD_INPUT_ERR =
             "Usage: java Tournament [round count]" +
                     " [render target: console/none]" +
-                    " [/player1: human/clever/whatever/snartypamts]" +
-                    " [player2: human/clever/whatever/snartypamts]";
+                    " [/player1: human/clever/whatever/snartypamts/neural" +
+                    "/solver]" +
+                    " [player2: human/clever/whatever/snartypamts/neural" +
+                    "/solver]" +
+                    " [optional - move time ms, game time ms]";
     private static final String END_TOURNAMENT_MSG = "=== player 1: %d |" +
             " player 2: %d | Draws: %d ===\r";
     private final int rounds;
     private final Renderer renderer;
     private final Player[] Players;
+    private final TimeControl timeControl; // null for untimed games
+    private final List<GameListener> listeners = new ArrayList<>();
+    private static final String RECORD_PROPERTY = "tournament.record";
+    private static final String ANALYTICS_PROPERTY = "tournament.analytics";
+    private static final String PONDER_MSG = "Pondering: %s";
     private static final int ROUNDS = 0;
     private static final int RENDERER = 1;
     private static final int PLAYER1 = 2;
     private static final int PLAYER2 = 3;
+    private static final int MOVE_TIME = 4;
+    private static final int GAME_TIME = 5;
+    private static final int UNTIMED_ARGS = 4;
+    private static final int TIMED_ARGS = 6;
 
     /**
      * CONSTRUCTOR -
@@ -31,9 +59,24 @@ public class Tournament {
      * @param players  - Array with Represents of the players.
      */
     public Tournament(int rounds, Renderer renderer, Player[] players) {
+        this(rounds, renderer, players, null);
+    }
+
+    /**
+     * CONSTRUCTOR -
+     * Initializes a tournament of timed games.
+     *
+     * @param rounds      - Number of rounds to be played.
+     * @param renderer    - Represents the renderer of the board.
+     * @param players     - Array with Represents of the players.
+     * @param timeControl - The clocks of every game, null for untimed games.
+     */
+    public Tournament(int rounds, Renderer renderer, Player[] players,
+                      TimeControl timeControl) {
         this.Players = players;
         this.renderer = renderer;
         this.rounds = rounds;
+        this.timeControl = timeControl;
     }
 
     /* ************ PUBLIC METHODS *********** */
@@ -44,17 +87,54 @@ public class Tournament {
      * Keeping scores of each player's winning games and draws.
      */
     public void playTournament() {
+        printWinnings(playRounds(0, this.rounds));
+        if (PlayerProfiler.getDefault() != null) {
+            PlayerProfiler.getDefault().printSummary();
+        }
+        if (Ponderer.isEnabled()) {
+            System.out.println(String.format(PONDER_MSG,
+                    Ponderer.getStats()));
+        }
+    }
+
+    /**
+     * Plays the given range of rounds of the tournament, alternating between
+     * the two players as the whole tournament would. Allows the rounds of a
+     * tournament to be split between several workers, and their scores to be
+     * summed up.
+     *
+     * @param firstRound - The first round to play.
+     * @param endRound   - The round to stop before.
+     * @return The scores of the rounds played: player1 winnings,
+     * player2 winnings and draws.
+     */
+    public int[] playRounds(int firstRound, int endRound) {
         int[] winnings = new int[3];
         /* winnings[0] - player1 winnings
            winnings[1] - player2 winnings
            winnings[2] - draws, */
-        for (int i = 0; i < this.rounds; i++) {
-            Game game = new Game(Players[i % Players.length],
-                    Players[(i + 1) % Players.length], this.renderer);
+        // a single game (and board) is reused for all the rounds:
+        Game game = new Game(Players[0], Players[1], this.renderer,
+                this.timeControl);
+        for (GameListener listener : listeners) {
+            game.addListener(listener);
+        }
+        for (int i = firstRound; i < endRound; i++) {
+            game.reset(Players[i % Players.length],
+                    Players[(i + 1) % Players.length]);
             Mark winner = game.run();
             updateWinnings(winnings, i, winner);
         }
-        printWinnings(winnings);
+        return winnings;
+    }
+
+    /**
+     * Adds a listener to be notified of the course of every game played.
+     *
+     * @param listener - The listener to add.
+     */
+    public void addGameListener(GameListener listener) {
+        listeners.add(listener);
     }
 
     /* ************ PRIVATE METHODS *********** */
@@ -95,7 +175,11 @@ public class Tournament {
         Checking valid input from command line
      */
     private static boolean inputIsNotValid(String[] args) {
-        if (args.length == 4 && Integer.parseInt(args[ROUNDS]) >= 0) {
+        if ((args.length == UNTIMED_ARGS && Integer.parseInt(args[ROUNDS]) >= 0)
+                || (args.length == TIMED_ARGS
+                && Integer.parseInt(args[ROUNDS]) >= 0
+                && Long.parseLong(args[MOVE_TIME]) > 0
+                && Long.parseLong(args[GAME_TIME]) > 0)) {
             return false;
         }
         System.err.println(BAD_INPUT_ERR);
@@ -104,7 +188,7 @@ public class Tournament {
 
     /* ************ MAIN *********** */
 
-    public static void main(String[] args) {
+    public static void main(String[] args) throws IOException {
         if (inputIsNotValid(args)) return;
         PlayerFactory playerFactory = new PlayerFactory();
         RendererFactory rendererFactory = new RendererFactory();
@@ -116,8 +200,34 @@ public class Tournament {
             System.out.println(BAD_INPUT_ERR);
             return;
         }
+        TimeControl timeControl = null;
+        if (args.length == TIMED_ARGS) {
+            timeControl = new TimeControl(Long.parseLong(args[MOVE_TIME]),
+                    Long.parseLong(args[GAME_TIME]), false);
+        }
         Tournament tournament = new Tournament(Integer.parseInt(args[ROUNDS]),
-                renderer, new Player[]{player1, player2});
+                renderer, new Player[]{player1, player2}, timeControl);
+        GameRecorder recorder = null;
+        if (System.getProperty(RECORD_PROPERTY) != null) {
+            recorder = new GameRecorder(new BufferedWriter(
+                    new FileWriter(System.getProperty(RECORD_PROPERTY))));
+            tournament.addGameListener(recorder);
+        }
+        MoveAnalytics analytics = null;
+        if (System.getProperty(ANALYTICS_PROPERTY) != null) {
+            analytics = new MoveAnalytics();
+            tournament.addGameListener(analytics);
+        }
         tournament.playTournament();
+        if (recorder != null) {
+            recorder.close();
+        }
+        if (analytics != null) {
+            analytics.printHeatmaps(System.out);
+            try (BufferedWriter out = new BufferedWriter(new FileWriter(
+                    System.getProperty(ANALYTICS_PROPERTY)))) {
+                analytics.writeCsv(out);
+            }
+        }
     }
 }
\ No newline at end of file
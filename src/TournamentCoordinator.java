@@ -0,0 +1,327 @@
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.BlockingDeque;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.LinkedBlockingDeque;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * The coordinator of a tournament distributed between worker processes
+ * (see TournamentWorker), for sweeps that outgrow the heap of a single JVM.
+ * The rounds are split into fixed ranges, each with a seed derived from the
+ * tournament's seed, and handed to the workers connected on a local socket,
+ * one range at a time. The scores of every range are kept by its index, so
+ * the merged result is exact, and only depends on the seed and the range
+ * size - not on the number of workers or on which worker played what.
+ * The range of a worker that crashed (lost its connection), or that hangs
+ * - takes many times longer than the ranges played so far took on average,
+ * or -Dcoordinator.firstRangeSeconds (600 by default) before any range was
+ * played - is handed to another worker. The coordinator may spawn its
+ * workers itself (running with the JVM options and system properties of the
+ * coordinator), and more workers may connect at any time, e.g. if all of
+ * them have crashed. A worker playing with other settings (see RoundRange)
+ * rejects the range it is handed, and is dropped.
+ *
+ * @author Matanel Pataki
+ */
+public class TournamentCoordinator {
+
+    /* ************ PRIVATE MEMBERS *********** */
+    private static final String USAGE_ERR = "Usage: java TournamentCoordinator" +
+            " [round count]" +
+            " [player1: clever/whatever/snartypamts/neural/solver]" +
+            " [player2: clever/whatever/snartypamts/neural/solver]" +
+            " [workers to spawn]" +
+            " [optional - seed] [optional - rounds per range]";
+    private static final String LISTENING_MSG =
+            "Coordinator listening on port %d, %d ranges to play";
+    private static final String WORKER_LOST_MSG =
+            "Worker lost, reassigning range %d";
+    private static final String END_TOURNAMENT_MSG = "=== player 1: %d |" +
+            " player 2: %d | Draws: %d ===";
+    private static final String REJECTED_MSG =
+            "Worker rejected range %d (settings differ), dropping it";
+    private static final String REASSIGNED_MSG = "Ranges reassigned: %d";
+    private static final String BAD_TALLY_ERR = "Expected range %d, got %d";
+    private static final int ROUNDS = 0;
+    private static final int PLAYER1 = 1;
+    private static final int PLAYER2 = 2;
+    private static final int WORKERS = 3;
+    private static final int SEED = 4;
+    private static final int RANGE_SIZE = 5;
+    private static final int DEFAULT_RANGE_SIZE = 1000;
+    private static final long POLL_MILLIS = 50;
+    private static final long WORKER_EXIT_MILLIS = 5000;
+    private static final long FIRST_RANGE_MILLIS = 1000 *
+            Long.getLong("coordinator.firstRangeSeconds", 600);
+    private static final long MIN_RANGE_MILLIS = 10_000;
+    private static final int HUNG_FACTOR = 10; // of the expected duration
+    private static final double NANOS_IN_MILLI = 1e6;
+    private final BlockingDeque<RoundRange> pending =
+            new LinkedBlockingDeque<>();
+    private final int[][] tallies; // by range index, null until played
+    private final CountDownLatch remaining;
+    private final AtomicInteger reassigned = new AtomicInteger();
+    private final LongAdder playedRounds = new LongAdder();
+    private final LongAdder playedNanos = new LongAdder();
+    private final ServerSocket serverSocket;
+    private final List<Thread> servers = new CopyOnWriteArrayList<>();
+
+    /**
+     * CONSTRUCTOR -
+     * Splits the tournament into ranges, and starts listening for workers
+     * on an ephemeral port of the local host.
+     *
+     * @param rounds    - Number of rounds to be played.
+     * @param player1   - Type of the first player.
+     * @param player2   - Type of the second player.
+     * @param seed      - The seed of the tournament.
+     * @param rangeSize - Number of rounds in a range.
+     * @throws IOException If the coordinator could not listen.
+     */
+    public TournamentCoordinator(int rounds, String player1, String player2,
+                                 long seed, int rangeSize) throws IOException {
+        int ranges = (rounds + rangeSize - 1) / rangeSize;
+        for (int i = 0; i < ranges; i++) {
+            pending.addLast(new RoundRange(i, i * rangeSize,
+                    Math.min(rounds, (i + 1) * rangeSize),
+                    RoundRange.rangeSeed(seed, i), player1, player2));
+        }
+        this.tallies = new int[ranges][];
+        this.remaining = new CountDownLatch(ranges);
+        this.serverSocket = new ServerSocket(0, 0,
+                InetAddress.getLoopbackAddress());
+    }
+
+    /* ************ PUBLIC METHODS *********** */
+
+    /**
+     * @return The local port workers should connect to.
+     */
+    public int getPort() {
+        return serverSocket.getLocalPort();
+    }
+
+    /**
+     * @return The number of ranges of the tournament.
+     */
+    public int getRangeCount() {
+        return tallies.length;
+    }
+
+    /**
+     * @return The number of times the range of a lost worker was reassigned.
+     */
+    public int getReassigned() {
+        return reassigned.get();
+    }
+
+    /**
+     * Spawns a worker process on the local host, with the classpath, JVM
+     * options and system properties of this process.
+     *
+     * @return The worker process.
+     * @throws IOException If the process could not be started.
+     */
+    public Process spawnWorker() throws IOException {
+        String java = System.getProperty("java.home") + File.separator +
+                "bin" + File.separator + "java";
+        List<String> command = new ArrayList<>();
+        command.add(java);
+        command.addAll(
+                ManagementFactory.getRuntimeMXBean().getInputArguments());
+        command.add("-cp");
+        command.add(System.getProperty("java.class.path"));
+        command.add(TournamentWorker.class.getName());
+        command.add(Integer.toString(getPort()));
+        return new ProcessBuilder(command).inheritIO().start();
+    }
+
+    /**
+     * Hands the ranges to the connecting workers until all were played.
+     *
+     * @return The merged scores: player1 winnings, player2 winnings
+     * and draws.
+     * @throws InterruptedException If interrupted while waiting for ranges.
+     * @throws IOException          If the coordinator could not stop
+     *                              listening.
+     */
+    public int[] run() throws InterruptedException, IOException {
+        Thread acceptor = new Thread(this::acceptWorkers);
+        acceptor.setDaemon(true);
+        acceptor.start();
+        remaining.await();
+        serverSocket.close();
+        for (Thread server : servers) {
+            server.join(WORKER_EXIT_MILLIS); // lets it tell its worker to quit
+        }
+        int[] winnings = new int[RoundRange.TALLY_SIZE];
+        for (int[] tally : tallies) {
+            for (int i = 0; i < winnings.length; i++) {
+                winnings[i] += tally[i];
+            }
+        }
+        return winnings;
+    }
+
+    /* ************ PRIVATE METHODS *********** */
+
+    /*
+        Accepts workers until the tournament is over, serving each on a
+        thread of its own.
+     */
+    private void acceptWorkers() {
+        while (!serverSocket.isClosed()) {
+            try {
+                Socket socket = serverSocket.accept();
+                Thread thread = new Thread(() -> serveWorker(socket));
+                thread.setDaemon(true);
+                servers.add(thread);
+                thread.start();
+            } catch (IOException e) {
+                return; // closed - the tournament is over
+            }
+        }
+    }
+
+    /*
+        Hands ranges to a worker one at a time, and records their scores.
+        If the worker is lost, rejects the range, or does not report the
+        range in time (see rangeTimeoutMillis), its range goes back to the
+        front of the queue.
+     */
+    private void serveWorker(Socket socket) {
+        RoundRange range = null;
+        try (Socket worker = socket) {
+            DataInputStream in = new DataInputStream(
+                    new BufferedInputStream(worker.getInputStream()));
+            DataOutputStream out = new DataOutputStream(
+                    new BufferedOutputStream(worker.getOutputStream()));
+            while (remaining.getCount() > 0) {
+                range = pending.poll(POLL_MILLIS, TimeUnit.MILLISECONDS);
+                if (range == null) {
+                    continue;
+                }
+                worker.setSoTimeout(rangeTimeoutMillis(range));
+                long start = System.nanoTime();
+                range.write(out);
+                int index = in.readInt();
+                if (index == RoundRange.REJECTED) {
+                    System.err.println(String.format(REJECTED_MSG,
+                            range.getIndex()));
+                    pending.addFirst(range);
+                    return;
+                }
+                int[] tally = new int[RoundRange.TALLY_SIZE];
+                for (int i = 0; i < tally.length; i++) {
+                    tally[i] = in.readInt();
+                }
+                if (index != range.getIndex()) {
+                    throw new IOException(String.format(BAD_TALLY_ERR,
+                            range.getIndex(), index));
+                }
+                record(index, tally);
+                playedRounds.add(range.getRounds());
+                playedNanos.add(System.nanoTime() - start);
+                range = null;
+            }
+            RoundRange.writeDone(out);
+        } catch (IOException e) {
+            if (range != null) {
+                reassigned.incrementAndGet();
+                System.err.println(String.format(WORKER_LOST_MSG,
+                        range.getIndex()));
+                pending.addFirst(range);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /*
+        Returns the time a worker is given to play a range: many times the
+        time the ranges played so far took on average (per round), or a
+        fixed time before any range was played.
+     */
+    private int rangeTimeoutMillis(RoundRange range) {
+        long rounds = playedRounds.sum();
+        if (rounds == 0) {
+            return (int) Math.min(Integer.MAX_VALUE, FIRST_RANGE_MILLIS);
+        }
+        double expected = playedNanos.sum() / (double) rounds *
+                range.getRounds() / NANOS_IN_MILLI;
+        return (int) Math.min(Integer.MAX_VALUE,
+                Math.max(MIN_RANGE_MILLIS, HUNG_FACTOR * expected));
+    }
+
+    /*
+        Records the scores of a range, once.
+     */
+    private synchronized void record(int index, int[] tally) {
+        if (tallies[index] == null) {
+            tallies[index] = tally;
+            remaining.countDown();
+        }
+    }
+
+    /*
+        Checking valid input from command line
+     */
+    private static boolean inputIsNotValid(String[] args) {
+        PlayerFactory playerFactory = new PlayerFactory();
+        if (args.length >= WORKERS + 1 && args.length <= RANGE_SIZE + 1 &&
+                Integer.parseInt(args[ROUNDS]) >= 0 &&
+                Integer.parseInt(args[WORKERS]) >= 0 &&
+                (args.length <= RANGE_SIZE ||
+                        Integer.parseInt(args[RANGE_SIZE]) > 0) &&
+                !args[PLAYER1].equals(PlayerFactory.HUMAN) &&
+                !args[PLAYER2].equals(PlayerFactory.HUMAN) &&
+                playerFactory.buildPlayer(args[PLAYER1]) != null &&
+                playerFactory.buildPlayer(args[PLAYER2]) != null) {
+            return false;
+        }
+        System.err.println(USAGE_ERR);
+        return true;
+    }
+
+    /* ************ MAIN *********** */
+
+    public static void main(String[] args) throws Exception {
+        if (inputIsNotValid(args)) return;
+        long seed = args.length > SEED ? Long.parseLong(args[SEED]) : 0;
+        int rangeSize = args.length > RANGE_SIZE ?
+                Integer.parseInt(args[RANGE_SIZE]) : DEFAULT_RANGE_SIZE;
+        TournamentCoordinator coordinator = new TournamentCoordinator(
+                Integer.parseInt(args[ROUNDS]), args[PLAYER1], args[PLAYER2],
+                seed, rangeSize);
+        System.out.println(String.format(LISTENING_MSG, coordinator.getPort(),
+                coordinator.getRangeCount()));
+        List<Process> workers = new ArrayList<>();
+        for (int i = 0; i < Integer.parseInt(args[WORKERS]); i++) {
+            workers.add(coordinator.spawnWorker());
+        }
+        int[] winnings = coordinator.run();
+        for (Process worker : workers) {
+            if (!worker.waitFor(WORKER_EXIT_MILLIS, TimeUnit.MILLISECONDS)) {
+                worker.destroy();
+            }
+        }
+        System.out.println(String.format(END_TOURNAMENT_MSG,
+                winnings[0], winnings[1], winnings[2]));
+        System.out.println(String.format(REASSIGNED_MSG,
+                coordinator.getReassigned()));
+    }
+}
@@ -0,0 +1,66 @@
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.Socket;
+
+/**
+ * A worker process of a distributed tournament.
+ * Connects to a TournamentCoordinator on the local host, then plays the
+ * ranges of rounds it is sent one at a time, replying with the scores of
+ * each, until the coordinator has no more work. A worker whose settings (see
+ * RoundRange) differ from the coordinator's rejects its first range, and
+ * quits.
+ *
+ * @author Matanel Pataki
+ */
+public class TournamentWorker {
+
+    /* ************ PRIVATE MEMBERS *********** */
+    private static final String USAGE_ERR =
+            "Usage: java TournamentWorker [coordinator port]";
+    private static final String SETTINGS_ERR = "Rejecting range %d: the" +
+            " coordinator plays with [%s], this worker with [%s]";
+
+    /* ************ PUBLIC METHODS *********** */
+
+    /**
+     * Plays ranges for the coordinator listening on the given local port,
+     * until it has no more work.
+     *
+     * @param port - The port of the coordinator.
+     * @throws IOException If the connection to the coordinator failed.
+     */
+    public static void work(int port) throws IOException {
+        try (Socket socket = new Socket(InetAddress.getLoopbackAddress(),
+                port)) {
+            DataInputStream in = new DataInputStream(
+                    new BufferedInputStream(socket.getInputStream()));
+            DataOutputStream out = new DataOutputStream(
+                    new BufferedOutputStream(socket.getOutputStream()));
+            RoundRange range;
+            while ((range = RoundRange.read(in)) != null) {
+                if (!range.hasLocalSettings()) {
+                    System.err.println(String.format(SETTINGS_ERR,
+                            range.getIndex(), range.getSettings(),
+                            RoundRange.localSettings()));
+                    RoundRange.writeRejected(out);
+                    return;
+                }
+                RoundRange.writeTally(out, range.getIndex(), range.play());
+            }
+        }
+    }
+
+    /* ************ MAIN *********** */
+
+    public static void main(String[] args) throws IOException {
+        if (args.length != 1) {
+            System.err.println(USAGE_ERR);
+            return;
+        }
+        work(Integer.parseInt(args[0]));
+    }
+}
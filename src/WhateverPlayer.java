@@ -12,6 +12,23 @@ public class WhateverPlayer implements Player {
     /* ************ PRIVATE MEMBERS *********** */
     private final Random random = new Random();
 
+    /**
+     * CONSTRUCTOR -
+     * Initializes a player with a random seed.
+     */
+    public WhateverPlayer() {
+    }
+
+    /**
+     * CONSTRUCTOR -
+     * Initializes a player whose choices are reproducible from the seed.
+     *
+     * @param seed - The seed of the player's random choices.
+     */
+    public WhateverPlayer(long seed) {
+        random.setSeed(seed);
+    }
+
     /**
      * Given a board and a mark, this function places the mark at random.
      *